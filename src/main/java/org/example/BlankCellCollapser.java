@@ -0,0 +1,99 @@
+package org.example;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.*;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * 空白单元格折叠。
+ * <p>
+ * ERP 导出的 .xls 常常对整列设置格式，每一行都会带上大量只有样式的 BLANK 单元格。
+ * 这里把源工作表的列默认样式、行样式复制到输出，并跳过与所在位置默认样式相同的空白单元格；
+ * 没有行、列默认样式时，只跳过样式在空单元格上不可见（无填充、无边框）的空白单元格。
+ * 输出的显示效果不变，只在需要的位置生成单元格。
+ */
+class BlankCellCollapser {
+
+    private final Sheet sourceSheet;
+    private final Workbook sourceWorkbook;
+
+    // 按源样式下标缓存：0 未计算，1 不可见，2 可见
+    private byte[] inertCache = new byte[64];
+
+    // 列默认样式，按需读取
+    private final CellStyle[] columnStyles;
+    private final boolean[] columnStyleLoaded;
+
+    BlankCellCollapser(Sheet sourceSheet) {
+        this.sourceSheet = sourceSheet;
+        this.sourceWorkbook = sourceSheet.getWorkbook();
+        int maxColumns = sourceWorkbook.getSpreadsheetVersion().getMaxColumns();
+        this.columnStyles = new CellStyle[maxColumns];
+        this.columnStyleLoaded = new boolean[maxColumns];
+    }
+
+    // 把列默认样式复制到输出工作表（.xls 最多 256 列）
+    void copyColumnStyles(Sheet outputSheet, Function<CellStyle, CellStyle> styleMapper) {
+        int maxColumns = Math.min(columnStyles.length, SpreadsheetVersion.EXCEL97.getMaxColumns());
+        for (int col = 0; col < maxColumns; col++) {
+            CellStyle style = columnStyle(col);
+            if (style != null) {
+                outputSheet.setDefaultColumnStyle(col, styleMapper.apply(style));
+            }
+        }
+    }
+
+    // 复制行样式，返回该行的默认样式（没有时返回 null）
+    CellStyle copyRowStyle(Row inputRow, Row outputRow, Function<CellStyle, CellStyle> styleMapper) {
+        CellStyle rowStyle = rowStyle(inputRow);
+        if (rowStyle != null) {
+            outputRow.setRowStyle(styleMapper.apply(rowStyle));
+        }
+        return rowStyle;
+    }
+
+    // 源行的默认样式，没有时返回 null
+    CellStyle rowStyle(Row inputRow) {
+        return inputRow.isFormatted() ? inputRow.getRowStyle() : null;
+    }
+
+    // 空白单元格是否可以不生成
+    boolean isRedundant(Cell cell, CellStyle rowStyle) {
+        if (cell.getCellType() != CellType.BLANK) return false;
+
+        CellStyle style = cell.getCellStyle();
+        // 行样式优先于列样式
+        CellStyle defaultStyle = rowStyle != null ? rowStyle : columnStyle(cell.getColumnIndex());
+        if (defaultStyle != null) {
+            return defaultStyle.getIndex() == style.getIndex();
+        }
+        return isInert(style);
+    }
+
+    private CellStyle columnStyle(int col) {
+        if (!columnStyleLoaded[col]) {
+            columnStyles[col] = sourceSheet.getColumnStyle(col);
+            columnStyleLoaded[col] = true;
+        }
+        return columnStyles[col];
+    }
+
+    // 样式在空单元格上是否不可见
+    private boolean isInert(CellStyle style) {
+        int index = style.getIndex() & 0xFFFF;
+        if (index >= inertCache.length) {
+            inertCache = Arrays.copyOf(inertCache, Math.max(index + 1, inertCache.length * 2));
+        }
+        if (inertCache[index] == 0) {
+            boolean inert = style.getFillPattern() == FillPatternType.NO_FILL
+                    && style.getBorderTop() == BorderStyle.NONE
+                    && style.getBorderBottom() == BorderStyle.NONE
+                    && style.getBorderLeft() == BorderStyle.NONE
+                    && style.getBorderRight() == BorderStyle.NONE;
+            inertCache[index] = (byte) (inert ? 1 : 2);
+        }
+        return inertCache[index] == 1;
+    }
+}
@@ -0,0 +1,86 @@
+package org.example;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.util.Arrays;
+
+/**
+ * 预览用的单元格显示文本，数字、日期按单元格的数据格式显示（与 Excel 中看到的一致）。
+ * <p>
+ * 每个样式下标只读取一次数据格式，之后直接交给 {@link DataFormatter}，
+ * DataFormatter 内部按格式字符串缓存已解析的格式对象。不是线程安全的，每个渲染线程使用自己的实例。
+ */
+class CellTextFormatter {
+
+    private final FormulaHandler formulas;
+    private final DataFormatter dataFormatter = new DataFormatter();
+    private final boolean date1904;
+
+    // 按样式下标缓存的数据格式
+    private short[] formatIndexes = new short[64];
+    private String[] formatStrings = new String[64];
+    private boolean[] loaded = new boolean[64];
+
+    CellTextFormatter(FormulaHandler formulas, Workbook workbook) {
+        this.formulas = formulas;
+        this.date1904 = isDate1904(workbook);
+    }
+
+    String format(Cell cell) {
+        if (cell == null) return "";
+
+        switch (cell.getCellType()) {
+            case STRING:
+                return cell.getStringCellValue();
+            case NUMERIC:
+                return formatNumber(cell, cell.getNumericCellValue());
+            case BOOLEAN:
+                return cell.getBooleanCellValue() ? "TRUE" : "FALSE";
+            case ERROR:
+                return FormulaError.forInt(cell.getErrorCellValue()).getString();
+            case FORMULA:
+                CellValue value = formulas.result(cell);
+                // FORMULA_ONLY 显示公式本身；数字结果按单元格格式显示
+                if (value != null && value.getCellType() == CellType.NUMERIC) {
+                    return formatNumber(cell, value.getNumberValue());
+                }
+                return formulas.display(cell);
+            default:
+                return "";
+        }
+    }
+
+    private String formatNumber(Cell cell, double value) {
+        int style = cell.getCellStyle().getIndex() & 0xFFFF;
+        if (style >= loaded.length) {
+            int size = Math.max(style + 1, loaded.length * 2);
+            formatIndexes = Arrays.copyOf(formatIndexes, size);
+            formatStrings = Arrays.copyOf(formatStrings, size);
+            loaded = Arrays.copyOf(loaded, size);
+        }
+        if (!loaded[style]) {
+            CellStyle cellStyle = cell.getCellStyle();
+            formatIndexes[style] = cellStyle.getDataFormat();
+            formatStrings[style] = cellStyle.getDataFormatString();
+            loaded[style] = true;
+        }
+
+        String formatString = formatStrings[style];
+        if (formatString == null) {
+            formatString = BuiltinFormats.getBuiltinFormat(0);
+        }
+        return dataFormatter.formatRawCellContents(value, formatIndexes[style], formatString, date1904);
+    }
+
+    private static boolean isDate1904(Workbook workbook) {
+        if (workbook instanceof HSSFWorkbook) {
+            return ((HSSFWorkbook) workbook).getInternalWorkbook().isUsing1904DateWindowing();
+        }
+        if (workbook instanceof XSSFWorkbook) {
+            return ((XSSFWorkbook) workbook).isDate1904();
+        }
+        return false;
+    }
+}
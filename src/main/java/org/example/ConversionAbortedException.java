@@ -0,0 +1,32 @@
+package org.example;
+
+/**
+ * 转换被取消、超时或超出资源限制时抛出，携带中止时的进度
+ */
+public class ConversionAbortedException extends RuntimeException {
+
+    public enum Reason {
+        CANCELLED,
+        TIMEOUT,
+        CELL_LIMIT,
+        PICTURE_LIMIT,
+        STYLE_LIMIT
+    }
+
+    private final Reason reason;
+    private final ConversionProgress progress;
+
+    public ConversionAbortedException(Reason reason, ConversionProgress progress) {
+        super(reason + ": " + progress);
+        this.reason = reason;
+        this.progress = progress;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public ConversionProgress getProgress() {
+        return progress;
+    }
+}
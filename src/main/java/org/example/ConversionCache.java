@@ -0,0 +1,245 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按输入内容缓存转换结果。
+ * <p>
+ * 键是输入文件内容的 SHA-256 加上影响输出的选项（和打开密码的摘要，避免不知道密码也能取到解密后的结果）；
+ * 命中时只需一次读文件计算哈希和一次文件复制。结果保存在磁盘目录中，总大小超过上限时按最近使用时间淘汰，
+ * 使用时间记录在文件修改时间上，重启后仍然有效。
+ * 同一输入的并发请求只转换一次，其余请求等待结果后复制。
+ */
+public class ConversionCache {
+
+    private static final String SUFFIX = ".xlsx";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // 等待同一输入的转换时，每隔这么久检查一次本请求的取消和超时
+    private static final long WAIT_SLICE_MILLIS = 100;
+
+    // 转换到指定的文件
+    interface Conversion {
+        void convertTo(File target) throws Exception;
+    }
+
+    private final File directory;
+    private final long maxBytes;
+
+    // 键 -> 文件大小，按访问顺序排列
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final ConcurrentHashMap<String, CompletableFuture<File>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ConversionCache(File directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory.toPath());
+        load();
+    }
+
+    // 读取已有的缓存文件，按修改时间恢复使用顺序，清理上次异常退出留下的临时文件
+    private void load() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            } else if (name.endsWith(SUFFIX)) {
+                entries.put(name.substring(0, name.length() - SUFFIX.length()), file.length());
+                totalBytes += file.length();
+            }
+        }
+        synchronized (this) {
+            evict(null);
+        }
+    }
+
+    /**
+     * 转换 inputFile 并写到 outputFile，命中缓存时直接复制；返回是否命中。
+     * conversion 负责真正的转换，只在未命中时调用。
+     * 等待其它请求的转换结果时仍按 guard 检查本请求的取消和超时，中止时抛出 {@link ConversionAbortedException}。
+     */
+    boolean convert(File inputFile, File outputFile, ConversionOptions options, ConversionGuard guard,
+                    Conversion conversion) throws Exception {
+        String key = key(inputFile, options);
+        while (true) {
+            File cached = lookup(key);
+            if (cached != null) {
+                try {
+                    Files.copy(cached.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    hits.incrementAndGet();
+                    return true;
+                } catch (NoSuchFileException e) {
+                    // 复制前刚被淘汰，重新转换
+                    remove(key);
+                }
+            }
+
+            CompletableFuture<File> future = new CompletableFuture<>();
+            CompletableFuture<File> running = inFlight.putIfAbsent(key, future);
+            if (running != null) {
+                // 同一输入正在转换，等待结果
+                try {
+                    await(running, guard);
+                } catch (ExecutionException e) {
+                    // 其它请求被取消或超时不代表本请求也会失败，重新尝试；真正的转换错误直接抛出
+                    if (!(e.getCause() instanceof ConversionAbortedException)) {
+                        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                }
+                continue;
+            }
+
+            try {
+                misses.incrementAndGet();
+                future.complete(store(key, conversion, outputFile));
+                return false;
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, future);
+            }
+        }
+    }
+
+    private static void await(CompletableFuture<File> running, ConversionGuard guard) throws ExecutionException {
+        while (true) {
+            guard.checkpoint();
+            try {
+                running.get(WAIT_SLICE_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                // 继续等待
+            } catch (InterruptedException e) {
+                // 保留中断标记，下一次检查点按取消中止
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 转换到临时文件，先复制到 outputFile，再改名为缓存文件；
+     * 结果比缓存上限还大时不缓存，返回 null（等待的请求会重新转换）。
+     */
+    private File store(String key, Conversion conversion, File outputFile) throws Exception {
+        File temp = File.createTempFile(key + ".", TEMP_SUFFIX, directory);
+        try {
+            conversion.convertTo(temp);
+            // 先写输出，缓存文件发布后可能被并发的 store 淘汰
+            Files.copy(temp.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            long size = temp.length();
+            if (size > maxBytes) return null;
+            File file = fileFor(key);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            synchronized (this) {
+                Long previous = entries.put(key, size);
+                totalBytes += size - (previous == null ? 0 : previous);
+                evict(key);
+            }
+            return file;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private synchronized File lookup(String key) {
+        if (entries.get(key) == null) return null;
+        File file = fileFor(key);
+        // 记录使用时间，重启后按此恢复顺序
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    private synchronized void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) totalBytes -= size;
+    }
+
+    // 调用方持有锁；keep 为刚加入的键，不淘汰；正在被复制的文件也可以删除，复制方会重新转换
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) continue;
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            File file = fileFor(eldest.getKey());
+            if (!file.delete() && file.exists()) {
+                System.err.println("Error deleting " + file);
+            }
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    // 流式计算输入内容的哈希，再加上选项和密码
+    static String key(File inputFile, ConversionOptions options) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(inputFile.toPath())) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        digest.update(options.fingerprint().getBytes(StandardCharsets.UTF_8));
+        if (options.getPassword() != null) {
+            digest.update(sha256().digest(options.getPassword().getBytes(StandardCharsets.UTF_8)));
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getSizeBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+}
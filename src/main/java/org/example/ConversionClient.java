@@ -0,0 +1,143 @@
+package org.example;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link ConversionDaemon} 的轻量客户端。
+ * <p>
+ * 本类只用到 JDK 的网络和 IO 类，客户端 JVM 不会加载 POI，启动只需几十毫秒；
+ * 守护进程没有运行时退回到在本进程内转换。
+ */
+public class ConversionClient implements Closeable {
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+
+    private ConversionClient(Socket socket, String token) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        out.write(token + "\n");
+        out.flush();
+    }
+
+    // 按端点文件连接本机的守护进程，没有运行时返回 null
+    public static ConversionClient connect() {
+        String[] endpoint = readEndpoint(endpointFile());
+        if (endpoint[0] == null) return null;
+        try {
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(endpoint[0]));
+            ConversionClient client = new ConversionClient(socket, endpoint[1]);
+            if (!client.ping()) {
+                client.close();
+                return null;
+            }
+            return client;
+        } catch (IOException | NumberFormatException e) {
+            // 端点文件是上次异常退出时留下的
+            return null;
+        }
+    }
+
+    public boolean ping() throws IOException {
+        return request("PING").startsWith("OK");
+    }
+
+    // 由守护进程转换，返回转换耗时（毫秒）；失败时抛出 IOException，消息为守护进程给出的原因
+    public long convert(File inputFile, File outputFile) throws IOException {
+        String reply = request("CONVERT\t" + inputFile.getAbsolutePath() + "\t" + outputFile.getAbsolutePath());
+        if (!reply.startsWith("OK\t")) {
+            throw new IOException(reply.startsWith("ERROR\t") ? reply.substring(6) : reply);
+        }
+        return Long.parseLong(reply.substring(3));
+    }
+
+    public void shutdownDaemon() throws IOException {
+        request("SHUTDOWN");
+    }
+
+    private String request(String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null) {
+            throw new EOFException("Daemon closed the connection");
+        }
+        return reply;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    // 守护进程写入端口和令牌的文件
+    static File endpointFile() {
+        return new File(System.getProperty("user.home"), ".xls-converter-daemon");
+    }
+
+    // 返回 {端口, 令牌}，文件不存在或格式不对时两项都为 null
+    static String[] readEndpoint(File file) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            String[] parts = line == null ? new String[0] : line.trim().split(" ");
+            if (parts.length == 2) return parts;
+        } catch (IOException ignored) {
+        }
+        return new String[2];
+    }
+
+    /**
+     * 命令行：
+     * <pre>
+     * ConversionClient 输入.xls 输出.xlsx [输入.xls 输出.xlsx ...]
+     * ConversionClient --shutdown
+     * </pre>
+     */
+    public static void main(String[] args) throws Exception {
+        boolean shutdown = args.length == 1 && "--shutdown".equals(args[0]);
+        if (!shutdown && (args.length == 0 || args.length % 2 != 0)) {
+            System.err.println("Usage: ConversionClient <input.xls> <output.xlsx> [<input.xls> <output.xlsx> ...]");
+            System.err.println("       ConversionClient --shutdown");
+            System.exit(2);
+        }
+
+        ConversionClient client = connect();
+        if (shutdown) {
+            if (client != null) {
+                client.shutdownDaemon();
+                client.close();
+            }
+            return;
+        }
+        if (client == null) {
+            System.err.println("Conversion daemon is not running, converting in process");
+        }
+
+        int failures = 0;
+        for (int i = 0; i < args.length; i += 2) {
+            File inputFile = new File(args[i]);
+            File outputFile = new File(args[i + 1]);
+            try {
+                if (client != null) {
+                    long millis = client.convert(inputFile, outputFile);
+                    System.out.println("转换成功: " + outputFile.getAbsolutePath() + " (" + millis + " ms)");
+                } else {
+                    ExcelConverter.convertXlsToXlsx(inputFile, outputFile);
+                    System.out.println("转换成功: " + outputFile.getAbsolutePath());
+                }
+            } catch (Exception e) {
+                System.err.println("转换失败: " + inputFile + ": " + e.getMessage());
+                failures++;
+            }
+        }
+        if (client != null) client.close();
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
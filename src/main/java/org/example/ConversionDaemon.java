@@ -0,0 +1,280 @@
+package org.example;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 常驻的转换守护进程：POI、XMLBeans 的类只加载一次，热点代码保持编译好的状态，
+ * 每个文件不再付出 JVM 启动和类加载的开销。
+ * <p>
+ * 只监听本机回环地址。启动时生成随机令牌，和端口一起写入 {@link ConversionClient#endpointFile()}
+ * （只有当前用户可读），客户端必须先发送令牌，其它用户无法借守护进程读写文件。
+ * 协议是 UTF-8 文本行，一个连接可以依次发送多个请求：
+ * <pre>
+ * 客户端: 令牌
+ * 客户端: CONVERT\t输入文件\t输出文件      服务端: OK\t耗时毫秒 或 ERROR\t原因
+ * 客户端: PING                              服务端: OK
+ * 客户端: SHUTDOWN                          服务端: OK，随后退出
+ * </pre>
+ * 客户端见 {@link ConversionClient}。
+ * <p>
+ * 冷启动可以再用 AppCDS 缩短：先用 --warmup-only 跑一遍预热，记录加载过的类，再生成共享归档：
+ * <pre>
+ * java -XX:DumpLoadedClassList=xls.classlist -cp try.jar org.example.ConversionDaemon --warmup-only
+ * java -Xshare:dump -XX:SharedClassListFile=xls.classlist -XX:SharedArchiveFile=xls.jsa -cp try.jar
+ * java -XX:SharedArchiveFile=xls.jsa -cp try.jar org.example.ConversionDaemon
+ * </pre>
+ * JDK 8 需要另加 -XX:+UnlockCommercialFeatures -XX:+UseAppCDS，JDK 10 需要 -XX:+UseAppCDS；
+ * 三条命令的 classpath 必须相同。
+ */
+public class ConversionDaemon implements Closeable {
+
+    public static final int DEFAULT_PORT = 17345;
+    // 令牌必须在这个时间内发送，未认证的连接不能长期占用处理线程
+    private static final int AUTH_TIMEOUT_MILLIS = 5_000;
+    private static final int MAX_TOKEN_LENGTH = 256;
+    // 请求行（含两个文件路径）的长度上限
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final XlsConverter converter;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final String token;
+    private volatile boolean closed;
+
+    // port 为 0 时由系统分配；threads 为同时处理的连接数
+    public ConversionDaemon(XlsConverter converter, int port, int threads) throws IOException {
+        this.converter = converter;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        AtomicInteger counter = new AtomicInteger();
+        this.connections = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "xls-daemon-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : random) {
+            hex.append(String.format("%02x", b));
+        }
+        this.token = hex.toString();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    // 写入端点文件后在当前线程接受连接，直到 close() 或收到 SHUTDOWN
+    public void serve() throws IOException {
+        writeEndpointFile();
+        try {
+            while (!closed) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException e) {
+                    if (closed) break;
+                    throw e;
+                }
+                connections.execute(() -> handle(socket));
+            }
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        connections.shutdownNow();
+        File endpoint = ConversionClient.endpointFile();
+        // 只删除自己写的端点文件
+        if (token.equals(ConversionClient.readEndpoint(endpoint)[1])) {
+            endpoint.delete();
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8)) {
+            s.setSoTimeout(AUTH_TIMEOUT_MILLIS);
+            String presented = readLine(in, MAX_TOKEN_LENGTH);
+            if (presented == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                    presented.getBytes(StandardCharsets.UTF_8))) {
+                reply(out, "ERROR\tinvalid token");
+                return;
+            }
+            // 认证后的连接可以空闲等待下一个请求
+            s.setSoTimeout(0);
+
+            String line;
+            while ((line = readLine(in, MAX_LINE_LENGTH)) != null) {
+                String[] request = line.split("\t");
+                switch (request[0]) {
+                    case "CONVERT":
+                        reply(out, convert(request));
+                        break;
+                    case "PING":
+                        reply(out, "OK");
+                        break;
+                    case "SHUTDOWN":
+                        reply(out, "OK");
+                        close();
+                        return;
+                    default:
+                        reply(out, "ERROR\tunknown request: " + request[0]);
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Daemon connection failed: " + e.getMessage());
+        }
+    }
+
+    // 读取一行（去掉 \r），连接关闭时返回 null，超过 maxLength 个字符时抛出异常
+    private static String readLine(Reader in, int maxLength) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) return line.length() == 0 ? null : line.toString();
+            if (line.length() >= maxLength) throw new IOException("Request line too long");
+            if (c != '\r') line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    private String convert(String[] request) {
+        if (request.length != 3) {
+            return "ERROR\tusage: CONVERT<TAB>input<TAB>output";
+        }
+        long start = System.nanoTime();
+        try {
+            converter.convert(new File(request[1]), new File(request[2]));
+            return "OK\t" + (System.nanoTime() - start) / 1_000_000;
+        } catch (Exception e) {
+            // 原因中的换行会破坏协议
+            return "ERROR\t" + String.valueOf(e.getMessage()).replaceAll("[\\r\\n\\t]+", " ");
+        }
+    }
+
+    private static void reply(Writer out, String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+    }
+
+    // 临时文件创建时就只有当前用户可读写（之后再收紧权限的话，其它用户可以在此之前打开它），写完后原子替换
+    private void writeEndpointFile() throws IOException {
+        Path endpoint = ConversionClient.endpointFile().toPath().toAbsolutePath();
+        Path privateDirectory = null;
+        Path temp;
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            temp = endpoint.resolveSibling(endpoint.getFileName() + ".tmp");
+            Files.deleteIfExists(temp);
+            Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            // 不支持 POSIX 权限时，在只有当前用户可以访问的目录（0700）中写入；
+            // Windows 上这些调用可能不生效，但用户目录的 ACL 本来就只允许当前用户访问
+            privateDirectory = Files.createTempDirectory(endpoint.getParent(), endpoint.getFileName().toString());
+            File directory = privateDirectory.toFile();
+            directory.setReadable(false, false);
+            directory.setReadable(true, true);
+            directory.setWritable(false, false);
+            directory.setWritable(true, true);
+            directory.setExecutable(false, false);
+            directory.setExecutable(true, true);
+            temp = Files.createFile(privateDirectory.resolve("endpoint"));
+        }
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(getPort() + " " + token + "\n");
+            }
+            Files.move(temp, endpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+            if (privateDirectory != null) {
+                Files.deleteIfExists(privateDirectory);
+            }
+        }
+    }
+
+    /**
+     * 命令行：
+     * <pre>
+     * ConversionDaemon [--port 端口] [--threads 连接数] [--cache 目录 [--cache-mb 上限]]   启动守护进程
+     * ConversionDaemon --warmup-only                     只预热后退出（用于生成 AppCDS 类列表）
+     * </pre>
+     */
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean warmUpOnly = false;
+        ConversionOptions options = ConversionOptions.defaults();
+        long cacheMegabytes = 1024;
+        File cacheDirectory = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--cache":
+                    cacheDirectory = new File(args[++i]);
+                    break;
+                case "--cache-mb":
+                    cacheMegabytes = Long.parseLong(args[++i]);
+                    break;
+                case "--warmup-only":
+                    warmUpOnly = true;
+                    break;
+                default:
+                    System.err.println("Usage: ConversionDaemon [--port <port>] [--threads <n>]"
+                            + " [--cache <dir> [--cache-mb <n>]] | --warmup-only");
+                    System.exit(2);
+            }
+        }
+
+        if (cacheDirectory != null && !warmUpOnly) {
+            options.setResultCache(new ConversionCache(cacheDirectory, cacheMegabytes * 1024 * 1024));
+        }
+        try (XlsConverter converter = new XlsConverter(options)) {
+            // 预热不经过结果缓存
+            long start = System.nanoTime();
+            converter.warmUp();
+            System.out.println("预热完成: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            if (warmUpOnly) return;
+
+            ConversionDaemon daemon = new ConversionDaemon(converter, port, threads);
+            Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+            System.out.println("转换守护进程已启动: 127.0.0.1:" + daemon.getPort());
+            daemon.serve();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.example;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 在转换过程中检查取消标记、截止时间和资源限制（协作式，由转换代码在每行、每个工作表处调用）
+ */
+class ConversionGuard {
+
+    private final ConversionOptions options;
+    private final ConversionProgress progress = new ConversionProgress();
+    private long deadlineNanos;
+    private boolean begun;
+    private volatile boolean cancelled;
+
+    ConversionGuard(ConversionOptions options) {
+        this.options = options;
+    }
+
+    // 转换开始时调用，截止时间从这里开始计算；再次调用（结果缓存未命中后开始转换）不重新计时
+    void begin() {
+        if (begun) {
+            checkpoint();
+            return;
+        }
+        begun = true;
+        progress.begin();
+        long timeout = options.getTimeoutMillis();
+        deadlineNanos = timeout > 0 ? System.nanoTime() + timeout * 1_000_000 : 0;
+        checkpoint();
+    }
+
+    ConversionProgress getProgress() {
+        return progress;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void start(int totalSheets, long totalRows) {
+        progress.start(totalSheets, totalRows);
+        checkpoint();
+    }
+
+    void startSheet(String sheetName) {
+        progress.startSheet(sheetName);
+        checkpoint();
+    }
+
+    void finishSheet() {
+        progress.finishSheet();
+    }
+
+    // 每复制完一行调用（xls 每行最多 256 列，检查间隔有上限）
+    void row(int cellCount, int styleCount) {
+        progress.addRow(cellCount);
+        progress.setStyles(styleCount);
+
+        long maxCells = options.getMaxCells();
+        if (maxCells > 0 && progress.getCells() > maxCells) {
+            abort(ConversionAbortedException.Reason.CELL_LIMIT);
+        }
+        int maxStyles = options.getMaxStyles();
+        if (maxStyles > 0 && styleCount > maxStyles) {
+            abort(ConversionAbortedException.Reason.STYLE_LIMIT);
+        }
+        checkpoint();
+    }
+
+    void pictures(long bytes) {
+        progress.addPictureBytes(bytes);
+
+        long maxPictureBytes = options.getMaxPictureBytes();
+        if (maxPictureBytes > 0 && progress.getPictureBytes() > maxPictureBytes) {
+            abort(ConversionAbortedException.Reason.PICTURE_LIMIT);
+        }
+        checkpoint();
+    }
+
+    // 写出阶段的检查点：每次写入输出文件前检查取消、中断和超时
+    OutputStream watch(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                checkpoint();
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                checkpoint();
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    // 检查取消和超时
+    void checkpoint() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            abort(ConversionAbortedException.Reason.CANCELLED);
+        }
+        if (deadlineNanos != 0 && System.nanoTime() - deadlineNanos > 0) {
+            abort(ConversionAbortedException.Reason.TIMEOUT);
+        }
+    }
+
+    private void abort(ConversionAbortedException.Reason reason) {
+        throw new ConversionAbortedException(reason, progress);
+    }
+}
@@ -0,0 +1,67 @@
+package org.example;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 可取消、有时间和资源限制的转换任务。
+ * <p>
+ * 限制来自 {@link ConversionOptions}（超时、单元格数、图片字节数、样式数），
+ * 超出限制或被取消时抛出 {@link ConversionAbortedException}，其中带有中止时的进度；
+ * 此时不会写出输出文件。
+ */
+public class ConversionJob implements Callable<ConversionProgress> {
+
+    private final File inputFile;
+    private final File outputFile;
+    private final ConversionOptions options;
+    private final ConversionGuard guard;
+    private final ExecutorService writeExecutor;
+
+    public ConversionJob(File inputFile, File outputFile, ConversionOptions options) {
+        this(inputFile, outputFile, options, null);
+    }
+
+    // writeExecutor: 共享的压缩线程池（见 XlsConverter），为 null 时按选项临时创建
+    ConversionJob(File inputFile, File outputFile, ConversionOptions options, ExecutorService writeExecutor) {
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+        this.options = options;
+        this.guard = new ConversionGuard(options);
+        this.writeExecutor = writeExecutor;
+    }
+
+    // 在当前线程执行，截止时间从开始执行时计算
+    @Override
+    public ConversionProgress call() throws Exception {
+        ExcelConverter.convertXlsToXlsx(inputFile, outputFile, options, guard, writeExecutor);
+        return guard.getProgress();
+    }
+
+    public Future<ConversionProgress> submit(ExecutorService executor) {
+        return executor.submit(this);
+    }
+
+    // 请求取消，转换线程在下一个检查点中止
+    public void cancel() {
+        guard.cancel();
+    }
+
+    public boolean isCancelled() {
+        return guard.isCancelled();
+    }
+
+    public ConversionProgress getProgress() {
+        return guard.getProgress();
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+}
@@ -0,0 +1,224 @@
+package org.example;
+
+import java.util.zip.Deflater;
+
+/**
+ * 转换选项
+ */
+public class ConversionOptions implements Cloneable {
+
+    private FormulaMode formulaMode = FormulaMode.CACHED_VALUE;
+    private boolean incremental;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private boolean storeMedia = true;
+    private int writeThreads = 1;
+    private int rowBlockThreads = 1;
+    private long timeoutMillis;
+    private long maxCells;
+    private long maxPictureBytes;
+    private int maxStyles;
+    private boolean collapseBlankCells;
+    private SearchIndex searchIndex;
+    private String password;
+    private boolean salvage;
+    private ConversionCache resultCache;
+    private boolean optimizePictures;
+    private float jpegQuality = 0.85f;
+
+    public static ConversionOptions defaults() {
+        return new ConversionOptions();
+    }
+
+    // 浅拷贝，除检索索引、结果缓存（按引用共享）外所有字段都是不可变值
+    public ConversionOptions copy() {
+        try {
+            return (ConversionOptions) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public FormulaMode getFormulaMode() {
+        return formulaMode;
+    }
+
+    public ConversionOptions setFormulaMode(FormulaMode formulaMode) {
+        this.formulaMode = formulaMode;
+        return this;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    // 增量模式：输出文件旁保存工作表指纹，内容未变化时跳过转换
+    public ConversionOptions setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    // xlsx 包的 deflate 压缩级别（-1 ~ 9），0 表示所有部件只存储不压缩
+    public ConversionOptions setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    public boolean isStoreMedia() {
+        return storeMedia;
+    }
+
+    // JPEG、PNG 等已压缩的图片是否直接存储
+    public ConversionOptions setStoreMedia(boolean storeMedia) {
+        this.storeMedia = storeMedia;
+        return this;
+    }
+
+    public int getWriteThreads() {
+        return writeThreads;
+    }
+
+    // 写出 xlsx 时并行压缩部件的线程数，1 表示在当前线程压缩
+    public ConversionOptions setWriteThreads(int writeThreads) {
+        this.writeThreads = Math.max(1, writeThreads);
+        return this;
+    }
+
+    public int getRowBlockThreads() {
+        return rowBlockThreads;
+    }
+
+    // 超高工作表按行块并行生成工作表 XML 的线程数，1 表示逐个创建单元格（见 RowBlockWriter）
+    public ConversionOptions setRowBlockThreads(int rowBlockThreads) {
+        this.rowBlockThreads = Math.max(1, rowBlockThreads);
+        return this;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    // 转换超时时间（毫秒），0 表示不限制
+    public ConversionOptions setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    public long getMaxCells() {
+        return maxCells;
+    }
+
+    // 最多复制的单元格数，0 表示不限制
+    public ConversionOptions setMaxCells(long maxCells) {
+        this.maxCells = maxCells;
+        return this;
+    }
+
+    public long getMaxPictureBytes() {
+        return maxPictureBytes;
+    }
+
+    // 图片总字节数上限，0 表示不限制
+    public ConversionOptions setMaxPictureBytes(long maxPictureBytes) {
+        this.maxPictureBytes = maxPictureBytes;
+        return this;
+    }
+
+    public int getMaxStyles() {
+        return maxStyles;
+    }
+
+    // 输出样式数上限，0 表示不限制
+    public ConversionOptions setMaxStyles(int maxStyles) {
+        this.maxStyles = maxStyles;
+        return this;
+    }
+
+    public boolean isCollapseBlankCells() {
+        return collapseBlankCells;
+    }
+
+    // 只有样式的空白单元格折叠为行、列默认样式，显示效果不变
+    public ConversionOptions setCollapseBlankCells(boolean collapseBlankCells) {
+        this.collapseBlankCells = collapseBlankCells;
+        return this;
+    }
+
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    // 转换时把单元格内容加入检索索引，为 null 时不建索引（不影响输出内容）
+    public ConversionOptions setSearchIndex(SearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+        return this;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    // 加密 .xls 的打开密码，为 null 时按未加密（或 Excel 默认密码）打开
+    public ConversionOptions setPassword(String password) {
+        this.password = password;
+        return this;
+    }
+
+    public boolean isSalvage() {
+        return salvage;
+    }
+
+    // 抢救模式：文件损坏时逐条读取记录，转换可恢复的内容，丢失的内容记入 SalvageReport
+    public ConversionOptions setSalvage(boolean salvage) {
+        this.salvage = salvage;
+        return this;
+    }
+
+    public ConversionCache getResultCache() {
+        return resultCache;
+    }
+
+    // 按输入内容缓存转换结果，相同的输入直接复制上次的结果；为 null 时不缓存。抢救模式下不使用缓存
+    public ConversionOptions setResultCache(ConversionCache resultCache) {
+        this.resultCache = resultCache;
+        return this;
+    }
+
+    public boolean isOptimizePictures() {
+        return optimizePictures;
+    }
+
+    // 图片优化：DIB 转为 PNG，缩小远大于显示尺寸的图片，JPEG 重新压缩（见 PictureOptimizer）
+    public ConversionOptions setOptimizePictures(boolean optimizePictures) {
+        this.optimizePictures = optimizePictures;
+        return this;
+    }
+
+    public float getJpegQuality() {
+        return jpegQuality;
+    }
+
+    // 图片优化时 JPEG 的压缩质量（0 ~ 1）
+    public ConversionOptions setJpegQuality(float jpegQuality) {
+        if (!(jpegQuality > 0 && jpegQuality <= 1)) {
+            throw new IllegalArgumentException("Invalid JPEG quality: " + jpegQuality);
+        }
+        this.jpegQuality = jpegQuality;
+        return this;
+    }
+
+    // 影响输出内容的选项，参与增量指纹比较；图片优化只在打开时加入，已有的指纹仍然有效
+    String fingerprint() {
+        return "formulaMode=" + formulaMode
+                + ",compressionLevel=" + compressionLevel
+                + ",storeMedia=" + storeMedia
+                + ",collapseBlankCells=" + collapseBlankCells
+                + (optimizePictures ? ",optimizePictures=" + jpegQuality : "");
+    }
+}
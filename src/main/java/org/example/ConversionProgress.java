@@ -0,0 +1,124 @@
+package org.example;
+
+/**
+ * 转换进度，可在其它线程中读取
+ */
+public class ConversionProgress {
+
+    private volatile long startNanos = System.nanoTime();
+
+    private volatile int totalSheets;
+    private volatile long totalRows;
+    private volatile int sheetsDone;
+    private volatile String currentSheet;
+    private volatile long rowsDone;
+    private volatile long cells;
+    private volatile long pictureBytes;
+    private volatile int styles;
+    private volatile SalvageReport salvageReport;
+
+    void setSalvageReport(SalvageReport salvageReport) {
+        this.salvageReport = salvageReport;
+    }
+
+    // 抢救模式下的报告，未启用抢救模式时为 null
+    public SalvageReport getSalvageReport() {
+        return salvageReport;
+    }
+
+    void begin() {
+        startNanos = System.nanoTime();
+    }
+
+    void start(int totalSheets, long totalRows) {
+        this.totalSheets = totalSheets;
+        this.totalRows = totalRows;
+    }
+
+    void startSheet(String sheetName) {
+        this.currentSheet = sheetName;
+    }
+
+    void finishSheet() {
+        sheetsDone++;
+    }
+
+    void addRow(int cellCount) {
+        rowsDone++;
+        cells += cellCount;
+    }
+
+    void addPictureBytes(long bytes) {
+        pictureBytes += bytes;
+    }
+
+    void setStyles(int styles) {
+        this.styles = styles;
+    }
+
+    public int getTotalSheets() {
+        return totalSheets;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public int getSheetsDone() {
+        return sheetsDone;
+    }
+
+    public String getCurrentSheet() {
+        return currentSheet;
+    }
+
+    public long getRowsDone() {
+        return rowsDone;
+    }
+
+    public long getCells() {
+        return cells;
+    }
+
+    public long getPictureBytes() {
+        return pictureBytes;
+    }
+
+    public int getStyles() {
+        return styles;
+    }
+
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    // 已完成的比例（按行计算），未开始时为 0
+    public double getFraction() {
+        long total = totalRows;
+        return total <= 0 ? 0 : Math.min(1.0, (double) rowsDone / total);
+    }
+
+    // 每秒处理的行数
+    public double getRowsPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed <= 0 ? 0 : rowsDone * 1000.0 / elapsed;
+    }
+
+    // 预计剩余时间（毫秒），无法估计时返回 -1
+    public long getEstimatedRemainingMillis() {
+        double fraction = getFraction();
+        if (fraction <= 0) return -1;
+        return (long) (getElapsedMillis() * (1 - fraction) / fraction);
+    }
+
+    @Override
+    public String toString() {
+        return "sheets " + sheetsDone + "/" + totalSheets
+                + (currentSheet == null ? "" : " (current: " + currentSheet + ")")
+                + ", rows " + rowsDone
+                + ", cells " + cells
+                + ", picture bytes " + pictureBytes
+                + ", styles " + styles
+                + ", elapsed " + getElapsedMillis() + " ms";
+    }
+}
@@ -0,0 +1,369 @@
+package org.example;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.awt.datatransfer.DataFlavor;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 转换队列面板：拖入或选择多个文件，在有界线程池中并发转换，并显示每个文件的实时进度。
+ * <p>
+ * 转换线程只修改任务自身的状态字段，从不直接访问 Swing 组件；
+ * 界面由一个 Swing 定时器定期统一刷新，多次进度变化合并为一次 EDT 更新。
+ */
+public class ConversionQueuePanel extends JPanel {
+
+    private static final int REFRESH_INTERVAL_MS = 250;
+
+    private static final String[] COLUMNS = {"文件", "状态", "进度", "工作表", "行数", "速度 (行/秒)", "剩余时间"};
+
+    private enum Status {
+        WAITING("等待中"),
+        RUNNING("转换中"),
+        DONE("完成"),
+        FAILED("失败"),
+        CANCELLED("已取消");
+
+        private final String label;
+
+        Status(String label) {
+            this.label = label;
+        }
+    }
+
+    // 队列中的一项，status/message 由转换线程写入
+    private static class Entry {
+        final ConversionJob job;
+        volatile Status status = Status.WAITING;
+        volatile String message;
+        Future<?> future;
+        // 上次刷新时显示的状态（只在 EDT 中访问）
+        Status shownStatus;
+
+        Entry(ConversionJob job) {
+            this.job = job;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final QueueTableModel model = new QueueTableModel();
+    private final JTable table = new JTable(model);
+    private final JLabel summaryLabel = new JLabel(" ");
+    private final ExecutorService executor;
+    private final ConversionOptions options;
+    private final Timer refreshTimer;
+
+    private File outputDirectory;
+
+    public ConversionQueuePanel(ConversionOptions options, int threads) {
+        super(new BorderLayout(10, 10));
+        this.options = options;
+        this.executor = newExecutor(threads);
+
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(260);
+        table.getColumnModel().getColumn(2).setCellRenderer(new ProgressRenderer());
+        table.getColumnModel().getColumn(1).setCellRenderer(new StatusRenderer());
+        table.setTransferHandler(new FileDropHandler());
+
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setTransferHandler(table.getTransferHandler());
+        add(scrollPane, BorderLayout.CENTER);
+        add(createButtons(), BorderLayout.NORTH);
+        add(summaryLabel, BorderLayout.SOUTH);
+
+        refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> refresh());
+        refreshTimer.start();
+    }
+
+    private JPanel createButtons() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+
+        JButton addButton = new JButton("添加 XLS 文件...");
+        addButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setMultiSelectionEnabled(true);
+            chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                    "Excel 97-2003 (*.xls)", "xls"));
+            if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                addFiles(Arrays.asList(chooser.getSelectedFiles()));
+            }
+        });
+
+        JButton outputButton = new JButton("输出目录...");
+        JLabel outputLabel = new JLabel("输出到源文件所在目录");
+        outputButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                outputDirectory = chooser.getSelectedFile();
+                outputLabel.setText("输出到 " + outputDirectory.getAbsolutePath());
+            }
+        });
+
+        JButton cancelButton = new JButton("取消所选");
+        cancelButton.addActionListener(e -> {
+            for (int row : table.getSelectedRows()) {
+                cancel(entries.get(table.convertRowIndexToModel(row)));
+            }
+        });
+
+        JButton clearButton = new JButton("清除已结束");
+        clearButton.addActionListener(e -> {
+            entries.removeIf(entry -> entry.status != Status.WAITING && entry.status != Status.RUNNING);
+            model.fireTableDataChanged();
+        });
+
+        panel.add(addButton);
+        panel.add(outputButton);
+        panel.add(cancelButton);
+        panel.add(clearButton);
+        panel.add(outputLabel);
+        panel.add(new JLabel("（可直接把文件拖入列表）"));
+        return panel;
+    }
+
+    /**
+     * 在 EDT 中调用。输出文件已存在时询问是否覆盖；输出文件已被队列中未结束的任务占用时
+     * （选择了输出目录后不同目录下的同名文件）自动改用新的文件名，两个任务不会写同一个文件。
+     */
+    public void addFiles(List<File> files) {
+        Set<File> claimed = new HashSet<>();
+        for (Entry entry : entries) {
+            if (entry.status == Status.WAITING || entry.status == Status.RUNNING) {
+                claimed.add(entry.job.getOutputFile().getAbsoluteFile());
+            }
+        }
+        for (File file : files) {
+            if (!file.isFile()) continue;
+
+            File outputFile = outputFileFor(file).getAbsoluteFile();
+            if (claimed.contains(outputFile)) {
+                outputFile = uniqueFile(outputFile, claimed);
+            } else if (outputFile.exists()) {
+                String[] choices = {"覆盖", "另存为新文件", "跳过"};
+                int choice = JOptionPane.showOptionDialog(this,
+                        "文件 " + outputFile.getName() + " 已存在。是否覆盖？", "文件已存在",
+                        JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, choices, choices[1]);
+                if (choice == 1) {
+                    outputFile = uniqueFile(outputFile, claimed);
+                } else if (choice != 0) {
+                    continue;
+                }
+            }
+            claimed.add(outputFile);
+
+            Entry entry = new Entry(new ConversionJob(file, outputFile, options));
+            entries.add(entry);
+            entry.future = executor.submit(() -> run(entry));
+        }
+        model.fireTableDataChanged();
+    }
+
+    // 停止定时器并取消所有未完成的任务
+    public void shutdown() {
+        refreshTimer.stop();
+        for (Entry entry : entries) {
+            entry.job.cancel();
+        }
+        executor.shutdownNow();
+    }
+
+    private File outputFileFor(File inputFile) {
+        String name = inputFile.getName();
+        int dot = name.lastIndexOf('.');
+        String outputName = (dot > 0 ? name.substring(0, dot) : name) + ".xlsx";
+        File directory = outputDirectory != null ? outputDirectory : inputFile.getAbsoluteFile().getParentFile();
+        return new File(directory, outputName);
+    }
+
+    // name (2).xlsx、name (3).xlsx ... 中第一个既不存在也未被占用的文件
+    private static File uniqueFile(File file, Set<File> claimed) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 2; ; i++) {
+            File candidate = new File(file.getParentFile(), base + " (" + i + ")" + extension);
+            if (!candidate.exists() && !claimed.contains(candidate)) return candidate;
+        }
+    }
+
+    // 在转换线程中执行
+    private void run(Entry entry) {
+        if (entry.job.isCancelled()) {
+            entry.status = Status.CANCELLED;
+            return;
+        }
+        entry.status = Status.RUNNING;
+        try {
+            entry.job.call();
+            entry.status = Status.DONE;
+            entry.message = entry.job.getOutputFile().getAbsolutePath();
+        } catch (ConversionAbortedException e) {
+            entry.status = e.getReason() == ConversionAbortedException.Reason.CANCELLED
+                    ? Status.CANCELLED : Status.FAILED;
+            entry.message = e.getMessage();
+        } catch (Exception e) {
+            e.printStackTrace();
+            entry.status = Status.FAILED;
+            entry.message = e.getMessage();
+        }
+    }
+
+    private void cancel(Entry entry) {
+        entry.job.cancel();
+        if (entry.status == Status.WAITING && entry.future.cancel(false)) {
+            entry.status = Status.CANCELLED;
+        }
+    }
+
+    // 定时器回调（EDT），统一刷新表格和汇总
+    private void refresh() {
+        int running = 0;
+        int waiting = 0;
+        int done = 0;
+        int failed = 0;
+        double rowsPerSecond = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            Status status = entry.status;
+            if (status == Status.RUNNING || status != entry.shownStatus) {
+                entry.shownStatus = status;
+                model.fireTableRowsUpdated(i, i);
+            }
+            switch (status) {
+                case RUNNING:
+                    running++;
+                    rowsPerSecond += entry.job.getProgress().getRowsPerSecond();
+                    break;
+                case WAITING:
+                    waiting++;
+                    break;
+                case DONE:
+                    done++;
+                    break;
+                default:
+                    failed++;
+                    break;
+            }
+        }
+        summaryLabel.setText(String.format("转换中 %d，等待 %d，完成 %d，失败/取消 %d，总速度 %.0f 行/秒",
+                running, waiting, done, failed, rowsPerSecond));
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "xls-convert-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static String formatMillis(long millis) {
+        if (millis < 0) return "-";
+        long seconds = (millis + 999) / 1000;
+        return seconds < 60 ? seconds + " 秒" : (seconds / 60) + " 分 " + (seconds % 60) + " 秒";
+    }
+
+    private class QueueTableModel extends AbstractTableModel {
+
+        @Override
+        public int getRowCount() {
+            return entries.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            Entry entry = entries.get(rowIndex);
+            ConversionProgress progress = entry.job.getProgress();
+            boolean started = entry.status != Status.WAITING;
+            switch (columnIndex) {
+                case 0:
+                    return entry.job.getInputFile().getName();
+                case 1:
+                    return entry;
+                case 2:
+                    return entry.status == Status.DONE ? 1.0 : (started ? progress.getFraction() : 0.0);
+                case 3:
+                    return started ? progress.getSheetsDone() + "/" + progress.getTotalSheets() : "";
+                case 4:
+                    return started ? progress.getRowsDone() + "/" + progress.getTotalRows() : "";
+                case 5:
+                    return entry.status == Status.RUNNING ? String.format("%.0f", progress.getRowsPerSecond()) : "";
+                case 6:
+                    return entry.status == Status.RUNNING ? formatMillis(progress.getEstimatedRemainingMillis()) : "";
+                default:
+                    return "";
+            }
+        }
+    }
+
+    private static class StatusRenderer extends DefaultTableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            Entry entry = (Entry) value;
+            super.getTableCellRendererComponent(table, entry.status.label, isSelected, hasFocus, row, column);
+            setToolTipText(entry.message);
+            return this;
+        }
+    }
+
+    private static class ProgressRenderer extends JProgressBar implements javax.swing.table.TableCellRenderer {
+        ProgressRenderer() {
+            super(0, 1000);
+            setStringPainted(true);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            double fraction = (Double) value;
+            setValue((int) (fraction * 1000));
+            setString(String.format("%.0f%%", fraction * 100));
+            return this;
+        }
+    }
+
+    // 接收拖入的文件
+    private class FileDropHandler extends TransferHandler {
+        @Override
+        public boolean canImport(TransferSupport support) {
+            return support.isDataFlavorSupported(DataFlavor.javaFileListFlavor);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean importData(TransferSupport support) {
+            if (!canImport(support)) return false;
+            try {
+                List<File> files = (List<File>) support.getTransferable().getTransferData(DataFlavor.javaFileListFlavor);
+                addFiles(files);
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+}
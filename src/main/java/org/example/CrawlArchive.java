@@ -0,0 +1,163 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 抓取结果的归档，格式同 WARC 1.1：每条记录（响应头加正文）单独压缩为一个 gzip 成员，
+ * 依次追加到 crawl-00000.warc.gz 等归档文件中，超过大小上限后换下一个文件，已有的文件不会覆盖。
+ * <p>
+ * 每个归档文件有一个同名的 .idx 索引，每行为
+ * {@code 地址 \t 时间 \t 状态码 \t Content-Type \t 偏移 \t 压缩后长度}，
+ * 按偏移和长度用 {@link #readRecord} 直接读取一条记录，不需要从头解压。
+ * 整个归档文件也可以用 gzip、WARC 工具顺序读取。
+ * <p>
+ * 正文是解码后的内容（分块编码已去掉），记录中的 HTTP 头部相应地去掉 Transfer-Encoding，
+ * Content-Length 改为实际长度。重定向的中间响应不归档。
+ */
+class CrawlArchive implements Closeable {
+
+    static final long DEFAULT_MAX_FILE_BYTES = 1024L * 1024 * 1024;
+    static final String ARCHIVE_SUFFIX = ".warc.gz";
+    static final String INDEX_SUFFIX = ".idx";
+    private static final String PREFIX = "crawl-";
+    private static final Pattern FILE_NAME = Pattern.compile(Pattern.quote(PREFIX) + "(\\d+)" + Pattern.quote(ARCHIVE_SUFFIX));
+
+    private final File directory;
+    private final long maxFileBytes;
+    private int sequence;
+    private File file;
+    private FileOutputStream out;
+    private Writer index;
+    // 当前文件已写入的字节数，即下一条记录的偏移
+    private long position;
+
+    CrawlArchive(File directory) {
+        this(directory, DEFAULT_MAX_FILE_BYTES);
+    }
+
+    CrawlArchive(File directory, long maxFileBytes) {
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        // 接着已有的最大序号编号
+        sequence = -1;
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                Matcher matcher = FILE_NAME.matcher(name);
+                if (matcher.matches()) sequence = Math.max(sequence, Integer.parseInt(matcher.group(1)));
+            }
+        }
+    }
+
+    // 追加一条响应记录
+    synchronized void write(HttpFetcher.Response response) throws IOException {
+        if (out == null || position >= maxFileBytes) roll();
+
+        StringBuilder http = new StringBuilder();
+        http.append(response.statusLine).append("\r\n");
+        for (String line : response.rawHeaders.split("\r\n")) {
+            String lower = line.toLowerCase(Locale.ROOT);
+            if (line.isEmpty() || lower.startsWith("transfer-encoding:") || lower.startsWith("content-length:")) continue;
+            http.append(line).append("\r\n");
+        }
+        http.append("Content-Length: ").append(response.body.length).append("\r\n\r\n");
+        byte[] httpHead = http.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        String date = Instant.now().truncatedTo(ChronoUnit.SECONDS).toString();
+        String warcHead = "WARC/1.1\r\n"
+                + "WARC-Type: response\r\n"
+                + "WARC-Record-ID: <urn:uuid:" + UUID.randomUUID() + ">\r\n"
+                + "WARC-Date: " + date + "\r\n"
+                + "WARC-Target-URI: " + response.url + "\r\n"
+                + "Content-Type: application/http;msgtype=response\r\n"
+                + "Content-Length: " + (httpHead.length + response.body.length) + "\r\n\r\n";
+        long offset = position;
+        long length = writeMember(warcHead, httpHead, response.body);
+
+        // 每条记录的索引行立即写出，进程中断时索引最多缺少正在写的这一条
+        String contentType = response.header("content-type");
+        index.write(response.url + "\t" + date + "\t" + response.status + "\t"
+                + (contentType == null ? "-" : contentType.replace('\t', ' ')) + "\t" + offset + "\t" + length + "\n");
+        index.flush();
+    }
+
+    // 关闭当前文件，打开下一个，开头写入 warcinfo 记录
+    private void roll() throws IOException {
+        closeFile();
+        sequence++;
+        file = new File(directory, String.format("%s%05d%s", PREFIX, sequence, ARCHIVE_SUFFIX));
+        out = new FileOutputStream(file);
+        index = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(directory, file.getName() + INDEX_SUFFIX)), StandardCharsets.UTF_8));
+        position = 0;
+
+        byte[] info = ("software: " + Crawler.USER_AGENT + "\r\nformat: WARC File Format 1.1\r\n")
+                .getBytes(StandardCharsets.UTF_8);
+        String warcHead = "WARC/1.1\r\n"
+                + "WARC-Type: warcinfo\r\n"
+                + "WARC-Record-ID: <urn:uuid:" + UUID.randomUUID() + ">\r\n"
+                + "WARC-Date: " + Instant.now().truncatedTo(ChronoUnit.SECONDS) + "\r\n"
+                + "WARC-Filename: " + file.getName() + "\r\n"
+                + "Content-Type: application/warc-fields\r\n"
+                + "Content-Length: " + info.length + "\r\n\r\n";
+        writeMember(warcHead, info, new byte[0]);
+    }
+
+    // 一条记录压缩为一个 gzip 成员，返回压缩后的长度
+    private long writeMember(String warcHead, byte[] block, byte[] body) throws IOException {
+        ByteArrayOutputStream member = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(member, 64 * 1024)) {
+            gzip.write(warcHead.getBytes(StandardCharsets.UTF_8));
+            gzip.write(block);
+            gzip.write(body);
+            gzip.write(new byte[]{'\r', '\n', '\r', '\n'});
+        }
+        member.writeTo(out);
+        position += member.size();
+        return member.size();
+    }
+
+    // 读取归档文件中 offset 处的一条记录（解压后的 WARC 头部、HTTP 头部和正文）
+    static byte[] readRecord(File archive, long offset, long length) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(archive, "r")) {
+            byte[] member = new byte[Math.toIntExact(length)];
+            file.seek(offset);
+            file.readFully(member);
+            // 只包含这一个成员，GZIPInputStream 不会读到下一条记录
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(member))) {
+                ByteArrayOutputStream record = new ByteArrayOutputStream();
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    record.write(buffer, 0, n);
+                }
+                return record.toByteArray();
+            }
+        }
+    }
+
+    private void closeFile() throws IOException {
+        if (out == null) return;
+        try {
+            index.close();
+        } finally {
+            out.close();
+            out = null;
+            index = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeFile();
+    }
+}
@@ -0,0 +1,103 @@
+package org.example;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 爬虫陷阱识别，对规范化后的地址（见 {@link UrlCanonicalizer}）判断是否值得抓取。
+ * <ul>
+ * <li>地址过长、路径层级过深的不抓取</li>
+ * <li>同一路径段重复出现多次的不抓取（相对链接写错形成的 /a/b/a/b/a/b...）</li>
+ * <li>按模式限额：路径中的数字替换为 #、只保留参数名得到模式，
+ * 日历、翻页、排序组合等无限地址空间中的地址模式相同，每个模式最多抓取 {@link #DEFAULT_PATTERN_BUDGET} 个</li>
+ * </ul>
+ */
+class CrawlTrapDetector {
+
+    static final int MAX_URL_LENGTH = 2048;
+    static final int MAX_PATH_DEPTH = 16;
+    // 同一路径段最多出现的次数
+    static final int MAX_SEGMENT_REPEATS = 2;
+    static final int DEFAULT_PATTERN_BUDGET = 1000;
+
+    private final int patternBudget;
+    // 模式 -> 已接受的地址数
+    private final Map<String, Integer> patterns = new HashMap<>();
+    private long rejected;
+
+    CrawlTrapDetector() {
+        this(DEFAULT_PATTERN_BUDGET);
+    }
+
+    CrawlTrapDetector(int patternBudget) {
+        this.patternBudget = patternBudget;
+    }
+
+    // 地址值得抓取时返回 true 并计入所属模式的限额；同一地址只应传入一次
+    synchronized boolean accept(String canonicalUrl) {
+        if (canonicalUrl.length() > MAX_URL_LENGTH || isLoop(canonicalUrl)) {
+            rejected++;
+            return false;
+        }
+        String pattern = patternOf(canonicalUrl);
+        int count = patterns.getOrDefault(pattern, 0);
+        if (count >= patternBudget) {
+            rejected++;
+            return false;
+        }
+        patterns.put(pattern, count + 1);
+        return true;
+    }
+
+    // 因陷阱规则拒绝的地址数
+    synchronized long getRejected() {
+        return rejected;
+    }
+
+    // 路径层级过深或路径段重复
+    static boolean isLoop(String canonicalUrl) {
+        String path = URI.create(canonicalUrl).getRawPath();
+        if (path == null || path.length() <= 1) return false;
+        String[] segments = path.substring(1).split("/");
+        if (segments.length > MAX_PATH_DEPTH) return true;
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (String segment : segments) {
+            if (segment.isEmpty()) continue;
+            if (counts.merge(segment, 1, Integer::sum) > MAX_SEGMENT_REPEATS) return true;
+        }
+        return false;
+    }
+
+    // 主机 + 路径（数字串替换为 #）+ 参数名
+    static String patternOf(String canonicalUrl) {
+        URI uri = URI.create(canonicalUrl);
+        StringBuilder pattern = new StringBuilder();
+        pattern.append(uri.getRawAuthority());
+        appendMasked(pattern, uri.getRawPath());
+        String query = uri.getRawQuery();
+        if (query != null) {
+            pattern.append('?');
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                pattern.append(equals >= 0 ? pair.substring(0, equals) : pair).append('&');
+            }
+        }
+        return pattern.toString();
+    }
+
+    private static void appendMasked(StringBuilder pattern, String text) {
+        boolean inDigits = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (!inDigits) pattern.append('#');
+                inDigits = true;
+            } else {
+                pattern.append(c);
+                inDigits = false;
+            }
+        }
+    }
+}
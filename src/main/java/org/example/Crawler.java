@@ -1,40 +1,94 @@
 package org.example;
 
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.StrUtil;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.net.URL;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.regex.Pattern;
 import java.util.stream.IntStream;
 
 public class Crawler {
-    private final Pattern urlPattern = Pattern.compile("^https?://.+$");
+    // robots.txt 按其中的产品名 Crawler 匹配
+    static final String USER_AGENT = "Crawler/1.0";
+
+    // 已访问的规范化地址
     private Set<String> visited = new HashSet<>();
+    // 路径循环、日历等无限地址空间
+    private final CrawlTrapDetector traps = new CrawlTrapDetector();
     private String filePath;
+    // robots.txt、DNS 和永久重定向按主机缓存
+    private final HttpFetcher fetcher;
+    // 图片限制大小、检查格式，写完后改名，中断时续传
+    private final ImageDownloader images;
+    // 页面和图片写入归档文件而不是单独的图片文件，为 null 时不归档
+    private final CrawlArchive archive;
 
     public Crawler(String url, String filePath) {
-        if (FileUtil.isDirectory(filePath)) FileUtil.mkdir(filePath);
+        this(url, filePath, false);
+    }
+
+    public Crawler(String url, String filePath, boolean archive) {
+        this(url, filePath, new HttpFetcher(new HostCache(), USER_AGENT), archive);
+    }
+
+    Crawler(String url, String filePath, HttpFetcher fetcher, boolean archive) {
+        if (!FileUtil.isDirectory(filePath)) FileUtil.mkdir(filePath);
         this.filePath = filePath;
-        dfs(url);
+        this.fetcher = fetcher;
+        this.images = new ImageDownloader(fetcher, new File(filePath), ImageDownloader.DEFAULT_MAX_BYTES);
+        this.archive = archive ? new CrawlArchive(new File(filePath)) : null;
+        try {
+            dfs(url);
+        } finally {
+            closeArchive();
+        }
         System.out.println("--------------> end");
     }
 
+    private void closeArchive() {
+        if (archive == null) return;
+        try {
+            archive.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close crawl archive: " + e.getMessage());
+        }
+    }
+
     public void dfs(String url) {
-        if (!set(url)) return;
+        // 同一页面的不同写法只抓取一次
+        url = UrlCanonicalizer.canonicalize(url);
+        if (url == null || !set(url)) return;
+        // robots.txt 禁止的页面不抓取
+        if (!fetcher.isAllowed(url)) return;
         System.out.println("visit to " + url);
         try {
-            Document doc = Jsoup.connect(url).get();
+            FlightEvents.Span fetch = FlightEvents.PAGE_FETCH.begin();
+            HttpFetcher.Response response = fetcher.get(url);
+            fetch.commit(url, response.status, response.body.length);
+            if (archive != null) archive.write(response);
+            if (response.status / 100 != 2) {
+                throw new IOException("HTTP " + response.status + ": " + url);
+            }
+            // 重定向的目标也记为已访问
+            String finalUrl = UrlCanonicalizer.canonicalize(response.url);
+            if (finalUrl != null) visited.add(finalUrl);
+
+            FlightEvents.Span parse = FlightEvents.PAGE_PARSE.begin();
+            // 相对地址按重定向后的最终地址解析
+            Document doc = Jsoup.parse(new ByteArrayInputStream(response.body), response.charset(), response.url);
             Elements img = doc.getElementsByTag("img");
+            Elements links = doc.select("a[href]");
+            parse.commit(url, links.size(), img.size());
+
             downloadImg(img);
-            for (Element link : doc.select("a[href]")) {
-                String nextUrl = link.attr("href");
+            for (Element link : links) {
+                String nextUrl = link.absUrl("href");
                 dfs(nextUrl);
             }
         } catch (Exception ignored) {
@@ -42,28 +96,30 @@ public class Crawler {
         }
     }
 
+    // url 为规范化后的地址，未访问过且不像爬虫陷阱时返回 true
     public boolean set(String url) {
-        if (urlPattern.matcher(url).find()) return visited.add(url);
-        else return false;
+        return visited.add(url) && traps.accept(url);
     }
 
     public void downloadImg(Elements img) {
         IntStream.range(0, img.size())
                 .forEach(i -> {
-                    String src = img.get(i).attr("src");
-                    if (StrUtil.startWith(src, "//")) src = String.format("http:%s", src);
+                    String src = UrlCanonicalizer.canonicalize(img.get(i).absUrl("src"));
+                    if (src == null) return;
                         try {
-                            URL url = new URL(src);
-                            FileUtil.writeFromStream(url.openStream(), appendPath(filePath));
+                            FlightEvents.Span span = FlightEvents.IMAGE_DOWNLOAD.begin();
+                            if (archive != null) {
+                                long size = images.archive(src, archive);
+                                if (size >= 0) span.commit(src, size);
+                                return;
+                            }
+                            File saved = images.download(src);
+                            if (saved != null) span.commit(src, saved.length());
                         } catch (IOException ignored) {
                         }
                 });
     }
 
-    private static String appendPath(String filePath) {
-        return filePath + "//img_" + System.currentTimeMillis() + ".jpg";
-    }
-
     public static void main(String[] args) {
         new Crawler("http://www.baidu.com", "D://testDownload");
     }
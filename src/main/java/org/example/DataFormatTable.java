@@ -0,0 +1,45 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 数字格式映射。
+ * <p>
+ * 源工作簿里自定义格式（下标 164 以后）的下标在输出工作簿中并不对应同一个格式，
+ * 因此按格式字符串映射：内置格式查预先建好的静态表，其余格式交给输出工作簿登记，结果按工作簿缓存。
+ */
+class DataFormatTable {
+
+    // 内置格式字符串 -> 下标，类加载时建好，多线程只读
+    private static final Map<String, Short> BUILTIN = new HashMap<>();
+
+    static {
+        String[] formats = BuiltinFormats.getAll();
+        for (int i = 0; i < formats.length; i++) {
+            if (formats[i] != null && !BUILTIN.containsKey(formats[i])) {
+                BUILTIN.put(formats[i], (short) i);
+            }
+        }
+    }
+
+    private final DataFormat outputFormats;
+    private final Map<String, Short> custom = new HashMap<>();
+
+    DataFormatTable(Workbook outputWorkbook) {
+        this.outputFormats = outputWorkbook.createDataFormat();
+    }
+
+    short indexOf(String format) {
+        if (format == null) return 0;
+
+        Short index = BUILTIN.get(format);
+        if (index != null) return index;
+
+        return custom.computeIfAbsent(format, outputFormats::getFormat);
+    }
+}
@@ -0,0 +1,207 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 监视收件目录，新放入或被修改的 .xls 写完后立即转换。
+ * <p>
+ * 目录变化由 {@link WatchService} 通知，不轮询目录；收到通知的文件进入待定表，
+ * 大小和修改时间保持 {@link #SETTLE_MILLIS} 不变才认为写完（复制、上传过程中会不断变化）。
+ * 转换在固定大小的线程池中执行，同一文件同时只转换一次，转换期间又被修改时在完成后重新转换。
+ * 结果先写到输出目录中的临时文件，完成后原子地改名为目标文件，读取方不会看到写了一半的 .xlsx。
+ * 启动时补转换停机期间放入、还没有输出或输出比源文件旧的文件。
+ */
+public class DirectoryWatcher implements Closeable {
+
+    // 文件大小和修改时间保持不变多久后开始转换
+    static final long SETTLE_MILLIS = 1000;
+    private static final long CHECK_INTERVAL_MILLIS = 250;
+
+    private final Path inbox;
+    private final Path outbox;
+    private final XlsConverter converter;
+    private final WatchService watchService;
+    private final ExecutorService pool;
+    private final ScheduledExecutorService timer;
+
+    // 等待写完的文件
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>();
+    // 正在转换的文件
+    private final Set<Path> converting = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    private static class Pending {
+        long size = -1;
+        long modified = -1;
+        long stableSince;
+    }
+
+    public DirectoryWatcher(File inbox, File outbox, XlsConverter converter, int threads) throws IOException {
+        this.inbox = inbox.toPath().toAbsolutePath();
+        this.outbox = outbox.toPath().toAbsolutePath();
+        this.converter = converter;
+        Files.createDirectories(this.outbox);
+        this.watchService = this.inbox.getFileSystem().newWatchService();
+        this.inbox.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "xls-watch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "xls-watch-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // 在当前线程处理目录通知，直到 close()
+    public void run() throws IOException, InterruptedException {
+        timer.scheduleWithFixedDelay(this::checkPending, CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        scan(true);
+        try {
+            while (!closed) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // 通知丢失，重新检查整个目录
+                        scan(false);
+                    } else {
+                        Path path = inbox.resolve((Path) event.context());
+                        if (isCandidate(path)) {
+                            pending.putIfAbsent(path, new Pending());
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    throw new IOException("Inbox is no longer accessible: " + inbox);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // close() 时退出
+        }
+    }
+
+    // onlyStale: 只加入还没有输出或输出比源文件旧的文件
+    private void scan(boolean onlyStale) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inbox)) {
+            for (Path path : files) {
+                if (!isCandidate(path)) continue;
+                File output = outputFor(path).toFile();
+                if (!onlyStale || !output.isFile() || output.lastModified() < path.toFile().lastModified()) {
+                    pending.putIfAbsent(path, new Pending());
+                }
+            }
+        }
+    }
+
+    // 定时检查待定文件，写完的提交转换
+    private void checkPending() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Path, Pending> entry : pending.entrySet()) {
+            Path path = entry.getKey();
+            Pending state = entry.getValue();
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // 已被删除或移走
+                pending.remove(path, state);
+                continue;
+            }
+
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+            if (size != state.size || modified != state.modified) {
+                state.size = size;
+                state.modified = modified;
+                state.stableSince = now;
+            } else if (now - state.stableSince >= SETTLE_MILLIS && converting.add(path)) {
+                pending.remove(path, state);
+                pool.execute(() -> convert(path));
+            }
+        }
+    }
+
+    private void convert(Path path) {
+        Path output = outputFor(path);
+        File temp = null;
+        try {
+            temp = File.createTempFile("." + output.getFileName() + ".", ".tmp", outbox.toFile());
+            long start = System.nanoTime();
+            converter.convert(path.toFile(), temp);
+            try {
+                Files.move(temp.toPath(), output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), output, StandardCopyOption.REPLACE_EXISTING);
+            }
+            System.out.println("转换成功: " + output + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        } catch (Exception e) {
+            // 文件再次被修改时会重新尝试
+            System.err.println("转换失败: " + path + ": " + e.getMessage());
+        } finally {
+            if (temp != null) temp.delete();
+            converting.remove(path);
+        }
+    }
+
+    private Path outputFor(Path input) {
+        String name = input.getFileName().toString();
+        return outbox.resolve(name.substring(0, name.length() - 4) + ".xlsx");
+    }
+
+    // 只处理 .xls，忽略 Office 的锁文件和隐藏文件
+    private static boolean isCandidate(Path path) {
+        String name = path.getFileName().toString();
+        return name.toLowerCase(Locale.ROOT).endsWith(".xls") && !name.startsWith("~$") && !name.startsWith(".")
+                && Files.isRegularFile(path);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+        timer.shutdownNow();
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 命令行：DirectoryWatcher 收件目录 输出目录 [线程数]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: DirectoryWatcher <inbox> <outbox> [threads]");
+            System.exit(2);
+        }
+        int threads = args.length == 3 ? Integer.parseInt(args[2])
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        try (XlsConverter converter = new XlsConverter()) {
+            converter.warmUp();
+            DirectoryWatcher watcher = new DirectoryWatcher(new File(args[0]), new File(args[1]), converter, threads);
+            Runtime.getRuntime().addShutdownHook(new Thread(watcher::close));
+            System.out.println("正在监视: " + watcher.inbox + " -> " + watcher.outbox);
+            watcher.run();
+        }
+    }
+}
@@ -4,6 +4,8 @@ import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.Shape;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import javax.swing.*;
@@ -13,41 +15,181 @@ import java.awt.image.BufferedImage;
 import java.io.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.zip.Deflater;
 
 public class ExcelConverter {
 
     public static void convertXlsToXlsx(File inputFile, File outputFile) throws Exception {
-        try (InputStream in = new FileInputStream(inputFile);
-             Workbook inputWorkbook = WorkbookFactory.create(in)) {
+        convertXlsToXlsx(inputFile, outputFile, ConversionOptions.defaults());
+    }
+
+    public static void convertXlsToXlsx(File inputFile, File outputFile, ConversionOptions options) throws Exception {
+        convertXlsToXlsx(inputFile, outputFile, options, new ConversionGuard(options), null);
+    }
+
+    /**
+     * 抢救模式转换：损坏的文件尽量转换可恢复的内容，返回丢失内容的报告。
+     * 密码错误或文件不是 OLE2 格式时仍然抛出异常。
+     */
+    public static SalvageReport salvageXlsToXlsx(File inputFile, File outputFile, ConversionOptions options)
+            throws Exception {
+        ConversionGuard guard = new ConversionGuard(options);
+        convertXlsToXlsx(inputFile, outputFile, options.copy().setSalvage(true), guard, null);
+        return guard.getProgress().getSalvageReport();
+    }
+
+    // writeExecutor 为 null 时按 options.writeThreads 临时创建压缩线程池
+    static void convertXlsToXlsx(File inputFile, File outputFile, ConversionOptions options,
+                                 ConversionGuard guard, ExecutorService writeExecutor) throws Exception {
+        // 结果缓存：未命中时关闭缓存、增量和索引转换到缓存目录，命中与否都在复制到输出后再更新索引
+        ConversionCache resultCache = options.getResultCache();
+        if (resultCache != null && !options.isSalvage()) {
+            ConversionOptions uncached = options.copy().setResultCache(null).setIncremental(false).setSearchIndex(null);
+            // 计时从这里开始，等待其它请求的转换结果也计入本请求的超时
+            guard.begin();
+            resultCache.convert(inputFile, outputFile, options, guard,
+                    target -> convertXlsToXlsx(inputFile, target, uncached, guard, writeExecutor));
+            // 旧的指纹描述的可能是另一个输入
+            SheetFingerprints.invalidate(outputFile);
+            if (options.getSearchIndex() != null) {
+                options.getSearchIndex().index(outputFile);
+            }
+            return;
+        }
+
+        guard.begin();
+        SalvageReport salvage = options.isSalvage() ? new SalvageReport() : null;
+        guard.getProgress().setSalvageReport(salvage);
+        try (Workbook inputWorkbook = XlsInput.openWorkbook(inputFile, options.getPassword(), salvage)) {
+            // 解析本身不能中断，解析完立即检查一次
+            guard.checkpoint();
+
+            // 增量模式：所有工作表指纹都未变化时直接复用上次的输出
+            SearchIndex searchIndex = options.getSearchIndex();
+            SheetFingerprints fingerprints = null;
+            if (options.isIncremental()) {
+                fingerprints = SheetFingerprints.compute(inputWorkbook, options);
+                SheetFingerprints previous = SheetFingerprints.load(outputFile);
+                // 输出还没有进入检索索引时仍需转换一次
+                if (outputFile.isFile() && fingerprints.matches(previous)
+                        && (searchIndex == null || searchIndex.isCurrent(outputFile))) {
+                    return;
+                }
+            }
+            SearchIndex.Document document = searchIndex != null ? searchIndex.newDocument(outputFile) : null;
 
-            // 收集图片信息
-            Map<Sheet, List<PictureInfo>> sheetPicturesMap = collectAllPictures(inputWorkbook);
+            // 收集图片信息，边收集边检查图片字节数限制
+            Map<Sheet, List<PictureInfo>> sheetPicturesMap = collectAllPictures(inputWorkbook, salvage, guard);
+            // 图片优化在后台进行，与复制单元格同时执行
+            if (options.isOptimizePictures()) {
+                startPictureOptimization(sheetPicturesMap, options.getJpegQuality());
+            }
 
-            try (Workbook outputWorkbook = new XSSFWorkbook()) {
+            try (XSSFWorkbook outputWorkbook = new XSSFWorkbook();
+                 RowBlockWriter rowBlocks = options.getRowBlockThreads() > 1
+                         ? new RowBlockWriter(outputWorkbook, options.getRowBlockThreads()) : null) {
                 // 转换样式映射
                 Map<CellStyle, CellStyle> styleCache = new HashMap<>();
+                DataFormatTable dataFormats = new DataFormatTable(outputWorkbook);
+                Function<CellStyle, CellStyle> styleMapper = style -> styleCache.computeIfAbsent(
+                        style, s -> copyCellStyle(s, dataFormats, inputWorkbook, outputWorkbook));
+
+                // 公式处理
+                FormulaHandler formulas = new FormulaHandler(options.getFormulaMode(), inputWorkbook);
+                if (formulas.getMode() == FormulaMode.FORMULA_ONLY) {
+                    outputWorkbook.setForceFormulaRecalculation(true);
+                }
 
                 // 转换每个工作表
+                long totalRows = 0;
+                for (Sheet sheet : inputWorkbook) {
+                    totalRows += sheet.getPhysicalNumberOfRows();
+                }
+                guard.start(inputWorkbook.getNumberOfSheets(), totalRows);
                 for (int i = 0; i < inputWorkbook.getNumberOfSheets(); i++) {
                     Sheet inputSheet = inputWorkbook.getSheetAt(i);
                     Sheet outputSheet = outputWorkbook.createSheet(inputSheet.getSheetName());
-
-                    // 设置列宽
-                    for (int col = 0; col <= inputSheet.getRow(0).getLastCellNum(); col++) {
-                        outputSheet.setColumnWidth(col, inputSheet.getColumnWidth(col));
+                    guard.startSheet(inputSheet.getSheetName());
+                    if (document != null) {
+                        document.startSheet(inputSheet.getSheetName());
                     }
 
-                    // 复制行和单元格
-                    copySheetContent(inputSheet, outputSheet, styleCache, inputWorkbook, outputWorkbook);
+                    // 复制行和单元格，同时收集列宽、行高
+                    SheetLayout layout = new SheetLayout(inputSheet);
+                    BlankCellCollapser blanks = options.isCollapseBlankCells()
+                            ? new BlankCellCollapser(inputSheet) : null;
+                    FlightEvents.Span copySpan = FlightEvents.SHEET_COPY.begin();
+                    copySheetContent(inputSheet, outputSheet, layout, styleCache, styleMapper,
+                            formulas, guard, blanks, document, salvage, rowBlocks);
+                    copySpan.commit(inputSheet.getSheetName(), inputSheet.getPhysicalNumberOfRows(),
+                            layout.getColumnExtent(), rowBlocks != null && rowBlocks.accepts(inputSheet));
+
+                    // 批量设置列宽、行高
+                    layout.applyTo(outputSheet);
 
                     // 添加图片
                     addPicturesToSheet(sheetPicturesMap.get(inputSheet), inputSheet, outputSheet, outputWorkbook);
+                    guard.finishSheet();
                 }
+                guard.checkpoint();
 
                 // 保存结果
-                try (FileOutputStream out = new FileOutputStream(outputFile)) {
-                    outputWorkbook.write(out);
+                if (fingerprints != null) {
+                    SheetFingerprints.invalidate(outputFile);
+                }
+                FlightEvents.Span writeSpan = FlightEvents.WORKBOOK_WRITE.begin();
+                try (OutputStream out = guard.watch(new FileOutputStream(outputFile))) {
+                    writeWorkbook(outputWorkbook, out, options, writeExecutor, rowBlocks);
+                } catch (ConversionAbortedException e) {
+                    // 写到一半中止，不留下不完整的输出
+                    outputFile.delete();
+                    throw e;
+                }
+                writeSpan.commit(outputFile.getPath(), outputWorkbook.getNumberOfSheets(),
+                        options.getCompressionLevel(), options.getWriteThreads(), outputFile.length());
+
+                if (fingerprints != null) {
+                    fingerprints.store(outputFile);
                 }
+                // 输出写完后再更新索引，索引中记录的是输出文件的大小和修改时间
+                if (document != null) {
+                    document.commit();
+                }
+            } finally {
+                // 中止时不再等待还没开始的图片任务
+                for (List<PictureInfo> pictures : sheetPicturesMap.values()) {
+                    for (PictureInfo picInfo : pictures) {
+                        if (picInfo.optimized != null) picInfo.optimized.cancel(true);
+                    }
+                }
+            }
+        }
+    }
+
+    // 写出 xlsx 包，按选项控制压缩级别和并行压缩；rowBlocks 不为 null 时替换按行块写出的工作表内容
+    private static void writeWorkbook(Workbook outputWorkbook, OutputStream out, ConversionOptions options,
+                                      ExecutorService sharedExecutor, RowBlockWriter rowBlocks) throws IOException {
+        int threads = options.getWriteThreads();
+        // 不并行压缩、不替换部件、也不需要按部件选择存储方式时由 POI 直接写出
+        if (threads <= 1 && rowBlocks == null && !options.isStoreMedia()
+                && options.getCompressionLevel() == Deflater.DEFAULT_COMPRESSION) {
+            outputWorkbook.write(out);
+            return;
+        }
+        ExecutorService executor = null;
+        if (threads > 1) {
+            executor = sharedExecutor != null ? sharedExecutor : Executors.newFixedThreadPool(threads);
+        }
+        try (ParallelZipOutputStream zip = new ParallelZipOutputStream(out, executor,
+                options.getCompressionLevel(), options.isStoreMedia(), rowBlocks)) {
+            outputWorkbook.write(zip);
+        } finally {
+            if (executor != null && executor != sharedExecutor) {
+                executor.shutdownNow();
             }
         }
     }
@@ -59,6 +201,8 @@ public class ExcelConverter {
         ClientAnchor anchor;
         int width;
         int height;
+        // 图片优化结果，未开启时为 null
+        Future<PictureOptimizer.Result> optimized;
 
         PictureInfo(byte[] imageData, String mimeType, ClientAnchor anchor, int width, int height) {
             this.imageData = imageData;
@@ -70,14 +214,23 @@ public class ExcelConverter {
     }
 
     // 收集所有图片信息
-    private static Map<Sheet, List<PictureInfo>> collectAllPictures(Workbook workbook) {
+    private static Map<Sheet, List<PictureInfo>> collectAllPictures(Workbook workbook, SalvageReport salvage,
+                                                                    ConversionGuard guard) {
         Map<Sheet, List<PictureInfo>> sheetPicturesMap = new HashMap<>();
 
         for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
             Sheet sheet = workbook.getSheetAt(i);
             List<PictureInfo> pictureList = new ArrayList<>();
 
-            Drawing<?> drawing = getDrawingPatriarch(sheet);
+            Drawing<?> drawing;
+            try {
+                drawing = getDrawingPatriarch(sheet);
+            } catch (RuntimeException e) {
+                // 绘图记录损坏时抢救模式下跳过该表的图片
+                if (salvage == null) throw e;
+                salvage.lost("pictures of sheet " + sheet.getSheetName() + ": " + e.getMessage());
+                drawing = null;
+            }
             if (drawing != null) {
                 for (Shape shape : drawing) {
                     if (shape instanceof Picture) {
@@ -87,20 +240,27 @@ public class ExcelConverter {
                         try {
                             ClientAnchor anchor = picture.getClientAnchor();
                             byte[] data = pictureData.getData();
+                            guard.pictures(data.length);
 
-                            // 获取图片尺寸
+                            // 获取图片尺寸，优先只读文件头，识别不了再解码
                             int width = 0;
                             int height = 0;
-                            try (ByteArrayInputStream bis = new ByteArrayInputStream(data)) {
-                                BufferedImage bufferedImage = ImageIO.read(bis);
-                                if (bufferedImage != null) {
-                                    width = bufferedImage.getWidth();
-                                    height = bufferedImage.getHeight();
+                            int[] dimensions = ImageProbe.dimensions(data);
+                            if (dimensions != null) {
+                                width = dimensions[0];
+                                height = dimensions[1];
+                            } else {
+                                try (ByteArrayInputStream bis = new ByteArrayInputStream(data)) {
+                                    BufferedImage bufferedImage = ImageIO.read(bis);
+                                    if (bufferedImage != null) {
+                                        width = bufferedImage.getWidth();
+                                        height = bufferedImage.getHeight();
+                                    }
+                                } catch (Exception e) {
+                                    // 如果无法解析图片大小，使用默认值
+                                    width = anchor.getDx2() - anchor.getDx1();
+                                    height = anchor.getDy2() - anchor.getDy1();
                                 }
-                            } catch (Exception e) {
-                                // 如果无法解析图片大小，使用默认值
-                                width = anchor.getDx2() - anchor.getDx1();
-                                height = anchor.getDy2() - anchor.getDy1();
                             }
 
                             pictureList.add(new PictureInfo(
@@ -110,6 +270,8 @@ public class ExcelConverter {
                                     width,
                                     height
                             ));
+                        } catch (ConversionAbortedException e) {
+                            throw e;
                         } catch (Exception e) {
                             System.err.println("Error processing picture: " + e.getMessage());
                         }
@@ -121,38 +283,91 @@ public class ExcelConverter {
         return sheetPicturesMap;
     }
 
+    // 按源工作表中的显示尺寸提交图片优化任务
+    private static void startPictureOptimization(Map<Sheet, List<PictureInfo>> sheetPicturesMap, float jpegQuality) {
+        for (Map.Entry<Sheet, List<PictureInfo>> entry : sheetPicturesMap.entrySet()) {
+            for (PictureInfo picInfo : entry.getValue()) {
+                int[] displaySize = PictureOptimizer.displaySize(entry.getKey(), picInfo.anchor);
+                picInfo.optimized = PictureOptimizer.submit(picInfo.imageData, picInfo.mimeType, displaySize, jpegQuality);
+            }
+        }
+    }
+
     // 复制工作表内容
-    private static void copySheetContent(Sheet inputSheet, Sheet outputSheet,
+    private static void copySheetContent(Sheet inputSheet, Sheet outputSheet, SheetLayout layout,
                                          Map<CellStyle, CellStyle> styleCache,
-                                         Workbook inputWorkbook, Workbook outputWorkbook) {
+                                         Function<CellStyle, CellStyle> styleMapper, FormulaHandler formulas,
+                                         ConversionGuard guard, BlankCellCollapser blanks,
+                                         SearchIndex.Document document, SalvageReport salvage,
+                                         RowBlockWriter rowBlocks) {
+
+        // 列默认样式
+        if (blanks != null) {
+            blanks.copyColumnStyles(outputSheet, styleMapper);
+        }
+
+        // 超高工作表按行块并行生成 XML，写出时再放入工作表
+        if (rowBlocks != null && rowBlocks.accepts(inputSheet)) {
+            rowBlocks.copyRows(inputSheet, (XSSFSheet) outputSheet, layout, styleCache, styleMapper,
+                    formulas, guard, blanks, document, salvage);
+        } else {
+            copyRows(inputSheet, outputSheet, layout, styleCache, styleMapper, formulas, guard, blanks,
+                    document, salvage);
+        }
+
+        // 复制合并单元格
+        for (int i = 0; i < inputSheet.getNumMergedRegions(); i++) {
+            CellRangeAddress mergedRegion = inputSheet.getMergedRegion(i);
+            try {
+                outputSheet.addMergedRegion(mergedRegion);
+            } catch (RuntimeException e) {
+                if (salvage == null) throw e;
+                salvage.lost("merged region " + inputSheet.getSheetName() + "!"
+                        + mergedRegion.formatAsString() + ": " + e.getMessage());
+            }
+        }
+    }
 
-        // 复制行
+    // 逐个创建行和单元格
+    private static void copyRows(Sheet inputSheet, Sheet outputSheet, SheetLayout layout,
+                                 Map<CellStyle, CellStyle> styleCache,
+                                 Function<CellStyle, CellStyle> styleMapper, FormulaHandler formulas,
+                                 ConversionGuard guard, BlankCellCollapser blanks,
+                                 SearchIndex.Document document, SalvageReport salvage) {
         for (Row inputRow : inputSheet) {
             if (inputRow == null) continue;
 
             Row outputRow = outputSheet.createRow(inputRow.getRowNum());
-            outputRow.setHeight(inputRow.getHeight());
+            layout.observeRow(inputRow);
+            CellStyle rowStyle = blanks != null ? blanks.copyRowStyle(inputRow, outputRow, styleMapper) : null;
 
             // 复制单元格
             for (Cell inputCell : inputRow) {
                 if (inputCell == null) continue;
+                // 与行、列默认样式相同的空白单元格不生成
+                if (blanks != null && blanks.isRedundant(inputCell, rowStyle)) continue;
 
                 Cell outputCell = outputRow.createCell(inputCell.getColumnIndex());
-                copyCell(inputCell, outputCell, styleCache, inputWorkbook, outputWorkbook);
+                try {
+                    copyCell(inputCell, outputCell, styleMapper, formulas, document);
+                } catch (RuntimeException e) {
+                    // 抢救模式下单个单元格出错只记录，不影响其它单元格
+                    if (salvage == null) throw e;
+                    salvage.lost("cell " + inputSheet.getSheetName() + "!"
+                            + new CellReference(inputCell).formatAsString(false) + ": " + e.getMessage());
+                    outputRow.removeCell(outputCell);
+                }
             }
-        }
 
-        // 复制合并单元格
-        for (int i = 0; i < inputSheet.getNumMergedRegions(); i++) {
-            CellRangeAddress mergedRegion = inputSheet.getMergedRegion(i);
-            outputSheet.addMergedRegion(mergedRegion);
+            // 检查取消、超时和资源限制
+            guard.row(inputRow.getPhysicalNumberOfCells(), styleCache.size());
         }
     }
 
     // 复制单元格内容和样式
     private static void copyCell(Cell inputCell, Cell outputCell,
-                                 Map<CellStyle, CellStyle> styleCache,
-                                 Workbook inputWorkbook, Workbook outputWorkbook) {
+                                 Function<CellStyle, CellStyle> styleMapper, FormulaHandler formulas,
+                                 SearchIndex.Document document) {
 
         // 复制单元格值
         switch (inputCell.getCellType()) {
@@ -166,7 +381,7 @@ public class ExcelConverter {
                 outputCell.setCellValue(inputCell.getBooleanCellValue());
                 break;
             case FORMULA:
-                outputCell.setCellFormula(inputCell.getCellFormula());
+                formulas.copy(inputCell, outputCell);
                 break;
             case BLANK:
                 outputCell.setBlank();
@@ -174,19 +389,28 @@ public class ExcelConverter {
         }
 
         // 复制单元格样式
-        CellStyle outputStyle = styleCache.computeIfAbsent(
-                inputCell.getCellStyle(),
-                style -> copyCellStyle(style, inputWorkbook, outputWorkbook)
-        );
-        outputCell.setCellStyle(outputStyle);
+        outputCell.setCellStyle(styleMapper.apply(inputCell.getCellStyle()));
+
+        // 加入检索索引
+        if (document != null) {
+            document.add(inputCell);
+        }
     }
 
     // 复制单元格样式
-    private static CellStyle copyCellStyle(CellStyle sourceStyle, Workbook inputWorkbook, Workbook outputWorkbook) {
+    private static CellStyle copyCellStyle(CellStyle sourceStyle, DataFormatTable dataFormats,
+                                           Workbook inputWorkbook, Workbook outputWorkbook) {
+        FlightEvents.Span span = FlightEvents.STYLE_CREATE.begin();
         CellStyle targetStyle = outputWorkbook.createCellStyle();
 
-        // 复制基本样式属性
-        targetStyle.cloneStyleFrom(sourceStyle);
+        // 复制样式属性（cloneStyleFrom 不支持 HSSF -> XSSF，逐项复制）
+        for (StyleAttributes.Attribute<?> attribute : StyleAttributes.ALL) {
+            try {
+                attribute.copy(sourceStyle, targetStyle);
+            } catch (Exception e) {
+                // 忽略不支持的属性
+            }
+        }
 
         // 复制字体
         Font sourceFont = inputWorkbook.getFontAt(sourceStyle.getFontIndex());
@@ -196,28 +420,16 @@ public class ExcelConverter {
             targetStyle.setFont(targetFont);
         }
 
-        // 特殊属性处理（如条件格式等）
+        // 处理数字格式（按格式字符串映射，自定义格式的下标在两个工作簿中不同）
         try {
-            // 处理数字格式
-            short format = sourceStyle.getDataFormat();
-            if (format > 0) {
-                targetStyle.setDataFormat(format);
+            if (sourceStyle.getDataFormat() > 0) {
+                targetStyle.setDataFormat(dataFormats.indexOf(sourceStyle.getDataFormatString()));
             }
-
-            // 处理边框样式
-            targetStyle.setBorderTop(sourceStyle.getBorderTop());
-            targetStyle.setBorderBottom(sourceStyle.getBorderBottom());
-            targetStyle.setBorderLeft(sourceStyle.getBorderLeft());
-            targetStyle.setBorderRight(sourceStyle.getBorderRight());
-
-            // 处理填充样式
-            targetStyle.setFillPattern(sourceStyle.getFillPattern());
-            targetStyle.setFillForegroundColor(sourceStyle.getFillForegroundColor());
-            targetStyle.setFillBackgroundColor(sourceStyle.getFillBackgroundColor());
         } catch (Exception e) {
-            // 忽略不支持的属性
+            // 忽略不支持的格式
         }
 
+        span.commit(sourceStyle.getIndex(), targetStyle.getIndex(), sourceStyle.getDataFormatString());
         return targetStyle;
     }
 
@@ -236,25 +448,32 @@ public class ExcelConverter {
     // 添加图片到工作表
     private static void addPicturesToSheet(List<PictureInfo> pictures,
                                            Sheet sourceSheet, Sheet outputSheet,
-                                           Workbook outputWorkbook) {
+                                           Workbook outputWorkbook) throws Exception {
         if (pictures == null || pictures.isEmpty()) return;
 
         CreationHelper creationHelper = outputWorkbook.getCreationHelper();
         Drawing<?> drawing = getOrCreateDrawing(outputSheet);
 
         for (PictureInfo picInfo : pictures) {
+            FlightEvents.Span span = FlightEvents.PICTURE_ADD.begin();
             // 创建锚点
             ClientAnchor newAnchor = createNewAnchor(creationHelper, picInfo.anchor, sourceSheet, outputSheet);
 
+            // 优化过的图片（任务不会失败，只可能被取消）
+            PictureOptimizer.Result optimized = picInfo.optimized != null
+                    ? picInfo.optimized.get()
+                    : new PictureOptimizer.Result(picInfo.imageData, picInfo.mimeType);
+
             // 添加图片到工作簿
-            int pictureType = getImageType(picInfo.mimeType);
-            int pictureIndex = outputWorkbook.addPicture(picInfo.imageData, pictureType);
+            int pictureType = getImageType(optimized.mimeType);
+            int pictureIndex = outputWorkbook.addPicture(optimized.data, pictureType);
 
             // 创建图片对象
             Picture picture = drawing.createPicture(newAnchor, pictureIndex);
 
             // 可选：调整图片大小
             adjustPictureSize(picture, picInfo, sourceSheet, outputSheet);
+            span.commit(outputSheet.getSheetName(), optimized.mimeType, picInfo.imageData.length, optimized.data.length);
         }
     }
 
@@ -391,104 +610,36 @@ public class ExcelConverter {
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame("Excel 转换工具");
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-            frame.setSize(600, 300);
-
-            JPanel panel = new JPanel(new GridLayout(3, 1, 10, 10));
-            panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
-
-            // 输入文件选择
-            JPanel inputPanel = new JPanel();
-            JTextField inputField = new JTextField(30);
-            inputField.setEditable(false);
-            JButton inputBtn = new JButton("选择 XLS 文件");
-            inputBtn.addActionListener(e -> {
-                JFileChooser chooser = new JFileChooser();
-                chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
-                        "Excel 97-2003 (*.xls)", "xls"));
-                if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
-                    inputField.setText(chooser.getSelectedFile().getAbsolutePath());
-                }
-            });
-            inputPanel.add(inputField);
-            inputPanel.add(inputBtn);
-
-            // 输出文件选择
-            JPanel outputPanel = new JPanel();
-            JTextField outputField = new JTextField(30);
-            outputField.setEditable(false);
-            JButton outputBtn = new JButton("选择 XLSX 输出位置");
-            outputBtn.addActionListener(e -> {
-                JFileChooser chooser = new JFileChooser();
-                chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
-                        "Excel Workbook (*.xlsx)", "xlsx"));
-                if (chooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
-                    File file = chooser.getSelectedFile();
-                    if (!file.getName().toLowerCase().endsWith(".xlsx")) {
-                        file = new File(file.getParent(), file.getName() + ".xlsx");
-                    }
-                    outputField.setText(file.getAbsolutePath());
+            frame.setSize(900, 500);
+
+            // 转换队列，最多同时转换 CPU 核数一半的文件
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            ConversionQueuePanel queuePanel = new ConversionQueuePanel(ConversionOptions.defaults(), threads);
+            queuePanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+            frame.addWindowListener(new java.awt.event.WindowAdapter() {
+                @Override
+                public void windowClosing(java.awt.event.WindowEvent e) {
+                    queuePanel.shutdown();
                 }
             });
-            outputPanel.add(outputField);
-            outputPanel.add(outputBtn);
-
-            // 转换按钮
-            JButton convertBtn = new JButton("开始转换");
-            JProgressBar progressBar = new JProgressBar();
-            progressBar.setStringPainted(true);
-            progressBar.setString("等待操作...");
-
-            convertBtn.addActionListener(e -> new Thread(() -> {
-                File inputFile = new File(inputField.getText());
-                File outputFile = new File(outputField.getText());
-
-                if (!inputFile.exists()) {
-                    JOptionPane.showMessageDialog(frame, "请选择有效的输入文件", "错误", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
-
-                // 确认覆盖文件
-                if (outputFile.exists()) {
-                    int result = JOptionPane.showConfirmDialog(frame,
-                            "输出文件已存在，是否覆盖?", "确认覆盖", JOptionPane.YES_NO_OPTION);
-                    if (result != JOptionPane.YES_OPTION) return;
-                }
-
-                convertBtn.setEnabled(false);
-                progressBar.setIndeterminate(true);
-                progressBar.setString("转换中...");
-
-                try {
-                    ExcelConverter.convertXlsToXlsx(inputFile, outputFile);
-                    progressBar.setIndeterminate(false);
-                    progressBar.setValue(100);
-                    progressBar.setString("转换完成!");
-                    JOptionPane.showMessageDialog(frame, "文件转换成功!\n路径: " + outputFile);
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    progressBar.setIndeterminate(false);
-                    progressBar.setValue(0);
-                    progressBar.setString("转换失败");
-                    JOptionPane.showMessageDialog(frame, "转换失败: " + ex.getMessage(),
-                            "错误", JOptionPane.ERROR_MESSAGE);
-                } finally {
-                    convertBtn.setEnabled(true);
-                }
-            }).start());
-
-            // 添加组件
-            panel.add(inputPanel);
-            panel.add(outputPanel);
-            panel.add(convertBtn);
-            panel.add(progressBar);
 
-            frame.add(panel);
+            frame.add(queuePanel);
             frame.setLocationRelativeTo(null);
             frame.setVisible(true);
         });
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        // 常驻模式，见 ConversionDaemon
+        if (args.length > 0 && "--daemon".equals(args[0])) {
+            ConversionDaemon.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // 监视目录，见 DirectoryWatcher
+        if (args.length > 0 && "--watch".equals(args[0])) {
+            DirectoryWatcher.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         // 如果带参数运行
         if (args.length == 2) {
             try {
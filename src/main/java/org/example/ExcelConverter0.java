@@ -8,7 +8,6 @@ import java.io.*;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -134,8 +133,7 @@ public class ExcelConverter0 extends JFrame {
     }
 
     private boolean convertExcel(File inputFile, File outputFile) {
-        try (InputStream in = new FileInputStream(inputFile);
-             Workbook inputWorkbook = new HSSFWorkbook(in)) {
+        try (Workbook inputWorkbook = XlsInput.openWorkbook(inputFile)) {
 
             try (Workbook outputWorkbook = new XSSFWorkbook()) {
                 // 创建样式映射表
@@ -45,18 +45,12 @@ public class ExcelConverter1 extends JFrame {
                     Sheet inputSheet = inputWorkbook.getSheetAt(i);
                     Sheet outputSheet = outputWorkbook.createSheet(inputSheet.getSheetName());
 
-                    // 设置列宽
-//                    for (int col = 0; col <= inputSheet.getRow(0).getLastCellNum(); col++) {
-//                        outputSheet.setColumnWidth(col, inputSheet.getColumnWidth(col));
-//                    }
-                    for (int row = 0; row < inputSheet.getLastRowNum(); row++) {
-                        for (int col = 0; col < inputSheet.getRow(row).getLastCellNum(); col++) {
-                            outputSheet.setColumnWidth(col, inputSheet.getColumnWidth(col));
-                        }
-                    }
+                    // 复制行和单元格，同时收集列宽、行高
+                    SheetLayout layout = new SheetLayout(inputSheet);
+                    copySheetContent(inputSheet, outputSheet, layout, styleCache, inputWorkbook, outputWorkbook);
 
-                    // 复制行和单元格
-                    copySheetContent(inputSheet, outputSheet, styleCache, inputWorkbook, outputWorkbook);
+                    // 批量设置列宽、行高
+                    layout.applyTo(outputSheet);
 
                     // 添加图片
                     addPicturesToSheet(sheetPicturesMap.get(inputSheet), inputSheet, outputSheet, outputWorkbook);
@@ -140,7 +134,7 @@ public class ExcelConverter1 extends JFrame {
     }
 
     // 复制工作表内容
-    private static void copySheetContent(Sheet inputSheet, Sheet outputSheet,
+    private static void copySheetContent(Sheet inputSheet, Sheet outputSheet, SheetLayout layout,
                                          Map<CellStyle, CellStyle> styleCache,
                                          Workbook inputWorkbook, Workbook outputWorkbook) {
 
@@ -149,7 +143,7 @@ public class ExcelConverter1 extends JFrame {
             if (inputRow == null) continue;
 
             Row outputRow = outputSheet.createRow(inputRow.getRowNum());
-            outputRow.setHeight(inputRow.getHeight());
+            layout.observeRow(inputRow);
 
             // 复制单元格
             for (Cell inputCell : inputRow) {
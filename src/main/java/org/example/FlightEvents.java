@@ -0,0 +1,266 @@
+package org.example;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 关键操作的 JFR 自定义事件（转换、预览、爬虫），带有大小和耗时，
+ * 用 {@code jcmd <pid> JFR.start} 或 {@code -XX:StartFlightRecording} 录制后可在 JMC、{@code jfr print} 中查看。
+ * <p>
+ * 项目按 Java 8 编译，不能直接继承 {@code jdk.jfr.Event}，这里通过反射用 {@code jdk.jfr.EventFactory} 动态定义事件，
+ * JDK 11 以上和 8u262 以上的 OpenJDK 可用，其它 JVM 上所有事件都是空操作。
+ * 事件类型在第一次开始录制后才定义，录制状态变化时刷新开关；没有录制或事件未启用时
+ * {@link Type#begin()} 只读两个 volatile 字段，返回空操作的 {@link Span}。
+ */
+final class FlightEvents {
+
+    private static final String CATEGORY = "XLS Converter";
+
+    static final Type SHEET_COPY = new Type("org.example.SheetCopy", "Sheet Copy", "Converter",
+            field("sheet", String.class, "Sheet"), field("rows", long.class, "Rows"),
+            field("columns", int.class, "Columns"), field("rowBlocks", boolean.class, "Row Blocks"));
+    static final Type STYLE_CREATE = new Type("org.example.StyleCreate", "Style Create", "Converter",
+            field("sourceIndex", int.class, "Source Index"), field("targetIndex", int.class, "Target Index"),
+            field("dataFormat", String.class, "Data Format"));
+    static final Type PICTURE_ADD = new Type("org.example.PictureAdd", "Picture Add", "Converter",
+            field("sheet", String.class, "Sheet"), field("mimeType", String.class, "MIME Type"),
+            bytes("sourceSize", "Source Size"), bytes("outputSize", "Output Size"));
+    static final Type WORKBOOK_WRITE = new Type("org.example.WorkbookWrite", "Workbook Write", "Converter",
+            field("file", String.class, "File"), field("sheets", int.class, "Sheets"),
+            field("compressionLevel", int.class, "Compression Level"), field("threads", int.class, "Threads"),
+            bytes("size", "Size"));
+    static final Type SHEET_RENDER = new Type("org.example.SheetRender", "Sheet Render", "Previewer",
+            field("file", String.class, "File"), field("sheet", String.class, "Sheet"),
+            field("rows", int.class, "Rows"), field("cells", long.class, "Cells"));
+    static final Type PAGE_FETCH = new Type("org.example.PageFetch", "Page Fetch", "Crawler",
+            field("url", String.class, "URL"), field("status", int.class, "Status"), bytes("size", "Size"));
+    static final Type PAGE_PARSE = new Type("org.example.PageParse", "Page Parse", "Crawler",
+            field("url", String.class, "URL"), field("links", int.class, "Links"), field("images", int.class, "Images"));
+    static final Type IMAGE_DOWNLOAD = new Type("org.example.ImageDownload", "Image Download", "Crawler",
+            field("url", String.class, "URL"), bytes("size", "Size"));
+
+    private static final Type[] TYPES = {
+            SHEET_COPY, STYLE_CREATE, PICTURE_ADD, WORKBOOK_WRITE, SHEET_RENDER, PAGE_FETCH, PAGE_PARSE, IMAGE_DOWNLOAD
+    };
+
+    // 空操作的事件
+    private static final Span NOOP = values -> {
+    };
+
+    // jdk.jfr 的反射入口，JFR 不可用时为 null
+    private static final Api API = Api.load();
+    // 录制状态变化后置位，下一次 begin() 时刷新各事件的开关
+    private static volatile boolean stateChanged = true;
+
+    private FlightEvents() {
+    }
+
+    // 一次正在计时的事件
+    interface Span {
+        // 按定义顺序提供字段值并提交，耗时为 begin() 到提交之间的时间
+        void commit(Object... values);
+    }
+
+    // 事件类型
+    static final class Type {
+        final String name;
+        final String label;
+        final String category;
+        final Field[] fields;
+        private volatile Object factory;
+        private volatile boolean enabled;
+
+        Type(String name, String label, String category, Field... fields) {
+            this.name = name;
+            this.label = label;
+            this.category = category;
+            this.fields = fields;
+        }
+
+        // 开始计时；JFR 不可用、没有录制或事件未启用时返回空操作的 Span
+        Span begin() {
+            if (stateChanged) refresh();
+            if (!enabled) return NOOP;
+            try {
+                Object event = API.newEvent.invoke(factory);
+                API.begin.invoke(event);
+                return values -> commit(event, values);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return NOOP;
+            }
+        }
+
+        private void commit(Object event, Object[] values) {
+            try {
+                for (int i = 0; i < values.length && i < fields.length; i++) {
+                    API.set.invoke(event, i, convert(values[i], fields[i].type));
+                }
+                API.commit.invoke(event);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // 事件丢失不影响业务
+            }
+        }
+
+        // 数值按字段类型转换，调用方不必区分 int 和 long
+        private static Object convert(Object value, Class<?> type) {
+            if (value instanceof Number) {
+                if (type == long.class) return ((Number) value).longValue();
+                if (type == int.class) return ((Number) value).intValue();
+            }
+            return value;
+        }
+    }
+
+    // 事件字段
+    static final class Field {
+        final String name;
+        final Class<?> type;
+        final String label;
+        final boolean bytes;
+
+        Field(String name, Class<?> type, String label, boolean bytes) {
+            this.name = name;
+            this.type = type;
+            this.label = label;
+            this.bytes = bytes;
+        }
+    }
+
+    private static Field field(String name, Class<?> type, String label) {
+        return new Field(name, type, label, false);
+    }
+
+    // 字节数字段，JMC 中按 KB、MB 显示
+    private static Field bytes(String name, String label) {
+        return new Field(name, long.class, label, true);
+    }
+
+    // 有录制在进行时定义事件类型（只定义一次），再按录制设置刷新开关
+    private static synchronized void refresh() {
+        if (!stateChanged) return;
+        stateChanged = false;
+        if (API == null) return;
+        try {
+            boolean recording = API.isRecording();
+            for (Type type : TYPES) {
+                if (recording && type.factory == null) {
+                    type.factory = API.define(type);
+                }
+                type.enabled = recording && (Boolean) API.isEnabled.invoke(API.getEventType.invoke(type.factory));
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            for (Type type : TYPES) {
+                type.enabled = false;
+            }
+        }
+    }
+
+    // jdk.jfr 中用到的类和方法
+    private static final class Api {
+        Class<?> flightRecorder;
+        Method isInitialized;
+        Method getFlightRecorder;
+        Method getRecordings;
+        Method getState;
+        Object running;
+        Method create;
+        Constructor<?> annotationElement;
+        Constructor<?> valueDescriptor;
+        Class<?> nameAnnotation;
+        Class<?> labelAnnotation;
+        Class<?> categoryAnnotation;
+        Class<?> dataAmountAnnotation;
+        Method newEvent;
+        Method getEventType;
+        Method isEnabled;
+        Method begin;
+        Method set;
+        Method commit;
+
+        static Api load() {
+            try {
+                ClassLoader loader = ClassLoader.getSystemClassLoader();
+                Api api = new Api();
+                api.flightRecorder = Class.forName("jdk.jfr.FlightRecorder", false, loader);
+                api.isInitialized = api.flightRecorder.getMethod("isInitialized");
+                api.getFlightRecorder = api.flightRecorder.getMethod("getFlightRecorder");
+                api.getRecordings = api.flightRecorder.getMethod("getRecordings");
+                Class<?> recording = Class.forName("jdk.jfr.Recording", false, loader);
+                api.getState = recording.getMethod("getState");
+                Class<?> recordingState = Class.forName("jdk.jfr.RecordingState", false, loader);
+                api.running = recordingState.getField("RUNNING").get(null);
+
+                Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory", false, loader);
+                api.create = eventFactory.getMethod("create", List.class, List.class);
+                api.newEvent = eventFactory.getMethod("newEvent");
+                api.getEventType = eventFactory.getMethod("getEventType");
+                api.isEnabled = Class.forName("jdk.jfr.EventType", false, loader).getMethod("isEnabled");
+                Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement", false, loader);
+                api.annotationElement = annotationElement.getConstructor(Class.class, Object.class);
+                api.valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor", false, loader)
+                        .getConstructor(Class.class, String.class, List.class);
+                api.nameAnnotation = Class.forName("jdk.jfr.Name", false, loader);
+                api.labelAnnotation = Class.forName("jdk.jfr.Label", false, loader);
+                api.categoryAnnotation = Class.forName("jdk.jfr.Category", false, loader);
+                api.dataAmountAnnotation = Class.forName("jdk.jfr.DataAmount", false, loader);
+
+                Class<?> event = Class.forName("jdk.jfr.Event", false, loader);
+                api.begin = event.getMethod("begin");
+                api.set = event.getMethod("set", int.class, Object.class);
+                api.commit = event.getMethod("commit");
+
+                // 监听录制开始、结束，不会初始化 JFR
+                Class<?> listener = Class.forName("jdk.jfr.FlightRecorderListener", false, loader);
+                Object proxy = Proxy.newProxyInstance(loader, new Class<?>[]{listener}, (p, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        switch (method.getName()) {
+                            case "hashCode":
+                                return System.identityHashCode(p);
+                            case "equals":
+                                return p == args[0];
+                            default:
+                                return "FlightEvents listener";
+                        }
+                    }
+                    stateChanged = true;
+                    return null;
+                });
+                api.flightRecorder.getMethod("addListener", listener).invoke(null, proxy);
+                return api;
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                return null;
+            }
+        }
+
+        boolean isRecording() throws ReflectiveOperationException {
+            if (!(Boolean) isInitialized.invoke(null)) return false;
+            Object recorder = getFlightRecorder.invoke(null);
+            for (Object recording : (List<?>) getRecordings.invoke(recorder)) {
+                if (getState.invoke(recording) == running) return true;
+            }
+            return false;
+        }
+
+        Object define(Type type) throws ReflectiveOperationException {
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(annotationElement.newInstance(nameAnnotation, type.name));
+            annotations.add(annotationElement.newInstance(labelAnnotation, type.label));
+            annotations.add(annotationElement.newInstance(categoryAnnotation, new String[]{CATEGORY, type.category}));
+
+            List<Object> fields = new ArrayList<>();
+            for (Field field : type.fields) {
+                Object label = annotationElement.newInstance(labelAnnotation, field.label);
+                List<Object> fieldAnnotations = field.bytes
+                        ? Arrays.asList(label, annotationElement.newInstance(dataAmountAnnotation, "BYTES"))
+                        : Collections.singletonList(label);
+                fields.add(valueDescriptor.newInstance(field.type, field.name, fieldAnnotations));
+            }
+            return create.invoke(null, annotations, fields);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.*;
+
+/**
+ * 按 {@link FormulaMode} 处理公式单元格。
+ * <p>
+ * EVALUATE 模式下整个工作簿共用一个求值器：POI 的求值缓存会记录单元格之间的依赖，
+ * 被其它公式引用、已经算过的单元格不会重复计算（转换只读源工作簿，缓存不会失效）；
+ * HSSF 的共享公式在读取时已解析为同一组 Ptg，不会逐个单元格重新解析。
+ */
+class FormulaHandler {
+
+    private final FormulaMode mode;
+    private final Workbook sourceWorkbook;
+    private FormulaEvaluator evaluator;
+
+    FormulaHandler(FormulaMode mode, Workbook sourceWorkbook) {
+        this.mode = mode == null ? FormulaMode.CACHED_VALUE : mode;
+        this.sourceWorkbook = sourceWorkbook;
+    }
+
+    FormulaMode getMode() {
+        return mode;
+    }
+
+    // 复制公式及其结果
+    void copy(Cell source, Cell target) {
+        target.setCellFormula(source.getCellFormula());
+        if (mode == FormulaMode.FORMULA_ONLY) return;
+
+        CellValue value = resultOf(source);
+        if (value == null) return;
+
+        switch (value.getCellType()) {
+            case NUMERIC:
+                target.setCellValue(value.getNumberValue());
+                break;
+            case STRING:
+                target.setCellValue(value.getStringValue());
+                break;
+            case BOOLEAN:
+                target.setCellValue(value.getBooleanValue());
+                break;
+            case ERROR:
+                target.setCellErrorValue(value.getErrorValue());
+                break;
+            default:
+                break;
+        }
+    }
+
+    // 公式结果的显示文本（预览使用），布尔值与 CellTextFormatter 一样显示为 TRUE/FALSE
+    String display(Cell source) {
+        if (mode == FormulaMode.FORMULA_ONLY) {
+            return "=" + source.getCellFormula();
+        }
+
+        CellValue value = result(source);
+        if (value == null) return "";
+
+        switch (value.getCellType()) {
+            case NUMERIC:
+                return String.valueOf(value.getNumberValue());
+            case STRING:
+                return value.getStringValue();
+            case BOOLEAN:
+                return value.getBooleanValue() ? "TRUE" : "FALSE";
+            case ERROR:
+                return FormulaError.forInt(value.getErrorValue()).getString();
+            default:
+                return "";
+        }
+    }
+
+    // 按当前模式取公式结果，FORMULA_ONLY 模式或没有结果时返回 null
+    CellValue result(Cell source) {
+        return mode == FormulaMode.FORMULA_ONLY ? null : resultOf(source);
+    }
+
+    private CellValue resultOf(Cell source) {
+        if (mode == FormulaMode.EVALUATE) {
+            try {
+                return evaluator().evaluate(source);
+            } catch (RuntimeException e) {
+                // 不支持的函数等情况，退回到缓存结果
+                System.err.println("Error evaluating " + source.getAddress() + ": " + e.getMessage());
+            }
+        }
+        return cachedResultOf(source);
+    }
+
+    private static CellValue cachedResultOf(Cell source) {
+        try {
+            switch (source.getCachedFormulaResultType()) {
+                case NUMERIC:
+                    return new CellValue(source.getNumericCellValue());
+                case STRING:
+                    return new CellValue(source.getStringCellValue());
+                case BOOLEAN:
+                    return CellValue.valueOf(source.getBooleanCellValue());
+                case ERROR:
+                    return CellValue.getError(source.getErrorCellValue());
+                default:
+                    return null;
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private FormulaEvaluator evaluator() {
+        if (evaluator == null) {
+            evaluator = sourceWorkbook.getCreationHelper().createFormulaEvaluator();
+        }
+        return evaluator;
+    }
+}
@@ -0,0 +1,13 @@
+package org.example;
+
+/**
+ * 公式单元格的处理方式
+ */
+public enum FormulaMode {
+    // 只复制公式文本，打开时由 Excel 重新计算
+    FORMULA_ONLY,
+    // 复制公式并带上源文件中的缓存结果（默认）
+    CACHED_VALUE,
+    // 复制公式并用求值器重新计算结果
+    EVALUATE
+}
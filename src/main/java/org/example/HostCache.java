@@ -0,0 +1,156 @@
+package org.example;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 爬虫按主机缓存的元数据：robots.txt 规则、DNS 解析结果和永久重定向。
+ * <p>
+ * 同一主机上的大量 URL 共用一份 robots 规则和一次 DNS 解析，301、308 重定向记住后直接请求目标地址。
+ * 解析通过 {@link Resolver} 进行，测试时可以换成本地的假解析器；解析结果（包括失败）按 TTL 缓存，
+ * 连接失败时由调用方使其失效。robots 规则按 RFC 9309 最多缓存 24 小时，无法获取时只缓存几分钟。
+ * 三个表都按最近使用淘汰，内存占用有上限。
+ */
+class HostCache {
+
+    static final long DEFAULT_DNS_TTL_MILLIS = 5 * 60 * 1000L;
+    // 解析失败的结果缓存时间
+    static final long NEGATIVE_DNS_TTL_MILLIS = 30 * 1000L;
+    static final long ROBOTS_TTL_MILLIS = 24 * 60 * 60 * 1000L;
+    static final long ROBOTS_UNAVAILABLE_TTL_MILLIS = 5 * 60 * 1000L;
+    static final int DEFAULT_MAX_ENTRIES = 100_000;
+    // 重定向链的最大长度，防止缓存中出现环
+    private static final int MAX_REDIRECT_HOPS = 10;
+
+    // 主机名解析
+    interface Resolver {
+        InetAddress[] resolve(String host) throws UnknownHostException;
+    }
+
+    private static final class Addresses {
+        final InetAddress[] addresses;
+        final UnknownHostException failure;
+        final long expiresAt;
+
+        Addresses(InetAddress[] addresses, UnknownHostException failure, long expiresAt) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Robots {
+        final RobotsRules rules;
+        final long expiresAt;
+
+        Robots(RobotsRules rules, long expiresAt) {
+            this.rules = rules;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Resolver resolver;
+    private final long dnsTtlMillis;
+    // 主机名 -> 解析结果
+    private final Map<String, Addresses> addresses;
+    // scheme://host:port -> robots 规则
+    private final Map<String, Robots> robots;
+    // URL -> 永久重定向的目标
+    private final Map<String, String> redirects;
+
+    HostCache() {
+        this(InetAddress::getAllByName, DEFAULT_DNS_TTL_MILLIS, DEFAULT_MAX_ENTRIES);
+    }
+
+    HostCache(Resolver resolver, long dnsTtlMillis, int maxEntries) {
+        this.resolver = resolver;
+        this.dnsTtlMillis = dnsTtlMillis;
+        this.addresses = lruMap(maxEntries);
+        this.robots = lruMap(maxEntries);
+        this.redirects = lruMap(maxEntries);
+    }
+
+    // 解析主机名，TTL 内直接返回上次的结果（解析失败时抛出上次的异常）
+    InetAddress[] resolve(String host) throws UnknownHostException {
+        long now = System.currentTimeMillis();
+        Addresses cached;
+        synchronized (addresses) {
+            cached = addresses.get(host);
+        }
+        if (cached == null || cached.expiresAt <= now) {
+            // 并发时同一主机可能解析多次，结果相同
+            try {
+                cached = new Addresses(resolver.resolve(host), null, now + dnsTtlMillis);
+            } catch (UnknownHostException e) {
+                cached = new Addresses(null, e, now + Math.min(dnsTtlMillis, NEGATIVE_DNS_TTL_MILLIS));
+            }
+            synchronized (addresses) {
+                addresses.put(host, cached);
+            }
+        }
+        if (cached.failure != null) {
+            UnknownHostException failure = new UnknownHostException(cached.failure.getMessage());
+            failure.initCause(cached.failure);
+            throw failure;
+        }
+        return cached.addresses.clone();
+    }
+
+    // 所有地址都连接失败时调用，下次重新解析
+    void invalidateAddresses(String host) {
+        synchronized (addresses) {
+            addresses.remove(host);
+        }
+    }
+
+    // origin 为 scheme://host:port；过期或没有时用 loader 加载
+    RobotsRules robots(String origin, Function<String, RobotsRules> loader) {
+        long now = System.currentTimeMillis();
+        Robots cached;
+        synchronized (robots) {
+            cached = robots.get(origin);
+        }
+        if (cached == null || cached.expiresAt <= now) {
+            RobotsRules rules = loader.apply(origin);
+            long ttl = rules.isUnavailable() ? ROBOTS_UNAVAILABLE_TTL_MILLIS : ROBOTS_TTL_MILLIS;
+            cached = new Robots(rules, System.currentTimeMillis() + ttl);
+            synchronized (robots) {
+                robots.put(origin, cached);
+            }
+        }
+        return cached.rules;
+    }
+
+    // 记录 301、308 重定向
+    void addPermanentRedirect(String from, String to) {
+        if (from.equals(to)) return;
+        synchronized (redirects) {
+            redirects.put(from, to);
+        }
+    }
+
+    // 按已知的永久重定向找到最终地址，没有时返回 url 本身
+    String redirect(String url) {
+        String current = url;
+        synchronized (redirects) {
+            for (int hop = 0; hop < MAX_REDIRECT_HOPS; hop++) {
+                String target = redirects.get(current);
+                if (target == null) break;
+                current = target;
+            }
+        }
+        return current;
+    }
+
+    private static <K, V> Map<K, V> lruMap(int maxEntries) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 分块输出的 HTML 写入器。
+ * <p>
+ * 标记和转义后的文本先追加到一个复用的缓冲区，缓冲区满一块后才写入底层 {@link Writer}，
+ * 大预览不必先在内存中拼出整个页面。转义时只有遇到需要替换的字符才逐个处理，其余连续片段整段复制。
+ */
+class HtmlChunkWriter {
+
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    private final Writer out;
+    private final StringBuilder chunk = new StringBuilder(CHUNK_SIZE + 1024);
+
+    HtmlChunkWriter(Writer out) {
+        this.out = out;
+    }
+
+    // 原样写入标记
+    HtmlChunkWriter markup(String markup) throws IOException {
+        chunk.append(markup);
+        return flushIfFull();
+    }
+
+    // 写入需要转义的文本
+    HtmlChunkWriter text(String text) throws IOException {
+        escape(text, chunk);
+        return flushIfFull();
+    }
+
+    HtmlChunkWriter text(int value) throws IOException {
+        chunk.append(value);
+        return flushIfFull();
+    }
+
+    void flush() throws IOException {
+        if (chunk.length() > 0) {
+            out.append(chunk);
+            chunk.setLength(0);
+        }
+        out.flush();
+    }
+
+    private HtmlChunkWriter flushIfFull() throws IOException {
+        if (chunk.length() >= CHUNK_SIZE) {
+            out.append(chunk);
+            chunk.setLength(0);
+        }
+        return this;
+    }
+
+    static void escape(String text, StringBuilder target) {
+        if (text == null) return;
+
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            String replacement;
+            switch (text.charAt(i)) {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '"':
+                    replacement = "&quot;";
+                    break;
+                case '\'':
+                    replacement = "&#39;";
+                    break;
+                default:
+                    continue;
+            }
+            target.append(text, start, i).append(replacement);
+            start = i + 1;
+        }
+        target.append(text, start, length);
+    }
+}
@@ -0,0 +1,492 @@
+package org.example;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 爬虫使用的简单 HTTP/1.1 客户端，连接、robots.txt 和重定向都经过 {@link HostCache}。
+ * <p>
+ * Java 8 的 {@code HttpURLConnection}（Jsoup 也使用它）不能指定连接的地址，只能走 JVM 自己的 DNS 缓存，
+ * 这里直接用套接字连接 HostCache 解析出的地址；HTTPS 仍按主机名发送 SNI 并校验证书。
+ * 每个请求都先检查 robots 规则，重定向手动跟随，301、308 记入缓存，以后直接请求目标地址。
+ * 每个请求使用一个连接（Connection: close），不请求压缩；{@link #stream} 把正文流交给调用方，用于下载大文件。
+ * 代理按 {@link ProxySelector}（http.proxyHost、https.proxyHost、socksProxyHost、http.nonProxyHosts 等系统属性）选择，
+ * HTTPS 经 HTTP 代理时使用 CONNECT 隧道；不支持需要认证的代理。经过代理时 DNS 由代理解析，不使用 HostCache。
+ */
+class HttpFetcher {
+
+    static final int MAX_REDIRECTS = 10;
+    // 网页正文的大小上限
+    static final int MAX_PAGE_BYTES = 16 * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int READ_TIMEOUT_MILLIS = 30_000;
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+    // RFC 9309：robots.txt 至少跟随 5 次重定向
+    private static final int MAX_ROBOTS_REDIRECTS = 5;
+
+    private final HostCache cache;
+    private final String userAgent;
+    // robots.txt 中匹配的产品名
+    private final String robotsAgent;
+
+    // 一次请求的结果
+    static class Response {
+        final String url;
+        final int status;
+        // 头部名称为小写
+        final Map<String, String> headers;
+        final byte[] body;
+        // 原样的状态行和头部行（每行以 CRLF 结尾），用于归档
+        final String statusLine;
+        final String rawHeaders;
+
+        Response(String url, int status, Map<String, String> headers, byte[] body, String statusLine,
+                 String rawHeaders) {
+            this.url = url;
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.statusLine = statusLine;
+            this.rawHeaders = rawHeaders;
+        }
+
+        Response withBody(byte[] body) {
+            return new Response(url, status, headers, body, statusLine, rawHeaders);
+        }
+
+        String header(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        // Content-Type 中的 charset，没有时返回 null
+        String charset() {
+            String type = header("content-type");
+            if (type == null) return null;
+            for (String part : type.split(";")) {
+                String[] pair = part.trim().split("=", 2);
+                if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")) {
+                    return pair[1].trim().replace("\"", "");
+                }
+            }
+            return null;
+        }
+    }
+
+    HttpFetcher(HostCache cache, String userAgent) {
+        this.cache = cache;
+        this.userAgent = userAgent;
+        int slash = userAgent.indexOf('/');
+        this.robotsAgent = slash > 0 ? userAgent.substring(0, slash) : userAgent;
+    }
+
+    // 只抓取 http、https 地址，且需 robots.txt 允许
+    boolean isAllowed(String url) {
+        try {
+            return isAllowed(new URL(url));
+        } catch (MalformedURLException e) {
+            return false;
+        }
+    }
+
+    private boolean isAllowed(URL url) {
+        String protocol = url.getProtocol();
+        if (!protocol.equals("http") && !protocol.equals("https")) return false;
+        return cache.robots(origin(url), this::loadRobots).isAllowed(pathOf(url));
+    }
+
+    // 流式读取正文；head 为响应头（body 为空），body 读到正文结束为止
+    interface BodyHandler<T> {
+        T handle(Response head, InputStream body) throws IOException;
+    }
+
+    // GET 请求，跟随重定向；robots.txt 禁止时抛出 IOException，主机无法解析时抛出 UnknownHostException
+    Response get(String url) throws IOException {
+        return stream(url, null, (head, body) -> head.withBody(readBody(body, MAX_PAGE_BYTES, false)));
+    }
+
+    /**
+     * 流式 GET，跟随重定向，正文交给 handler 读取，不缓存在内存中。
+     * headers 为额外的请求头（如 Range、If-Range），可以为 null。
+     */
+    <T> T stream(String url, Map<String, String> headers, BodyHandler<T> handler) throws IOException {
+        String current = cache.redirect(url);
+        for (int hop = 0; ; hop++) {
+            URL target = new URL(current);
+            // 无法解析的主机直接报告，不当作 robots.txt 禁止
+            if (proxyFor(target).type() == Proxy.Type.DIRECT) cache.resolve(hostOf(target));
+            if (!isAllowed(target)) {
+                throw new IOException("Blocked by robots.txt: " + current);
+            }
+            String next;
+            int status;
+            try (Exchange exchange = send(target, headers)) {
+                String location = exchange.head.header("location");
+                if (!isRedirect(exchange.head.status) || location == null) {
+                    return handler.handle(exchange.head, exchange.body);
+                }
+                next = new URL(target, location).toString();
+                status = exchange.head.status;
+            }
+            if (hop == MAX_REDIRECTS) {
+                throw new IOException("Too many redirects: " + url);
+            }
+            if (status == 301 || status == 308) {
+                cache.addPermanentRedirect(current, next);
+            }
+            current = cache.redirect(next);
+        }
+    }
+
+    // 2xx 时解析规则，4xx 时全部允许，其它情况（5xx、网络错误、重定向过多）全部禁止
+    private RobotsRules loadRobots(String origin) {
+        try {
+            String current = cache.redirect(origin + "/robots.txt");
+            for (int hop = 0; hop <= MAX_ROBOTS_REDIRECTS; hop++) {
+                URL url = new URL(current);
+                Response response;
+                try (Exchange exchange = send(url, null)) {
+                    response = exchange.head;
+                    if (response.status >= 200 && response.status < 300) {
+                        response = response.withBody(readBody(exchange.body, RobotsRules.MAX_BYTES, true));
+                    }
+                }
+                String location = response.header("location");
+                if (isRedirect(response.status) && location != null) {
+                    String next = new URL(url, location).toString();
+                    if (response.status == 301 || response.status == 308) {
+                        cache.addPermanentRedirect(current, next);
+                    }
+                    current = cache.redirect(next);
+                } else if (response.status >= 200 && response.status < 300) {
+                    return RobotsRules.parse(new String(response.body, StandardCharsets.UTF_8), robotsAgent);
+                } else if (response.status >= 400 && response.status < 500) {
+                    return RobotsRules.allowAll();
+                } else {
+                    return RobotsRules.unavailable();
+                }
+            }
+        } catch (IOException e) {
+            // 按无法获取处理
+        }
+        return RobotsRules.unavailable();
+    }
+
+    // 一次请求的连接：响应头和正文流，关闭时断开连接
+    private static final class Exchange implements Closeable {
+        final Socket socket;
+        final Response head;
+        final InputStream body;
+
+        Exchange(Socket socket, Response head, InputStream body) {
+            this.socket = socket;
+            this.head = head;
+            this.body = body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    // 单个请求，不跟随重定向
+    private Exchange send(URL url, Map<String, String> extraHeaders) throws IOException {
+        Proxy proxy = proxyFor(url);
+        Socket socket = connect(url, proxy);
+        try {
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            String authority = authorityOf(url);
+            StringBuilder head = new StringBuilder();
+            head.append("GET ");
+            // HTTP 代理使用绝对地址形式的请求行
+            if (proxy.type() == Proxy.Type.HTTP && url.getProtocol().equals("http")) {
+                head.append("http://").append(authority);
+            }
+            head.append(pathOf(url)).append(" HTTP/1.1\r\n");
+            head.append("Host: ").append(authority).append("\r\n");
+            head.append("User-Agent: ").append(userAgent).append("\r\n");
+            head.append("Accept: */*\r\n");
+            head.append("Accept-Encoding: identity\r\n");
+            if (extraHeaders != null) {
+                for (Map.Entry<String, String> header : extraHeaders.entrySet()) {
+                    head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+                }
+            }
+            head.append("Connection: close\r\n\r\n");
+            out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            int status;
+            String statusLine;
+            Map<String, String> headers;
+            StringBuilder rawHeaders;
+            do {
+                statusLine = readLine(in);
+                String[] parts = statusLine.split(" ", 3);
+                if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+                    throw new IOException("Invalid status line from " + url + ": " + statusLine);
+                }
+                try {
+                    status = Integer.parseInt(parts[1]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid status line from " + url + ": " + statusLine);
+                }
+                rawHeaders = new StringBuilder();
+                headers = readHeaders(in, rawHeaders);
+                // 跳过 100 Continue 等中间响应
+            } while (status >= 100 && status < 200);
+
+            InputStream body = status == 204 || status == 304 ? new ByteArrayInputStream(new byte[0])
+                    : new BodyInputStream(in, headers);
+            return new Exchange(socket, new Response(url.toString(), status, headers, new byte[0],
+                    statusLine, rawHeaders.toString()), body);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    // 直接连接时依次尝试解析出的地址
+    private Socket connect(URL url, Proxy proxy) throws IOException {
+        String host = hostOf(url);
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        if (proxy.type() != Proxy.Type.DIRECT) {
+            return connectThrough(proxy, url, host, port);
+        }
+        IOException failure = null;
+        for (InetAddress address : cache.resolve(host)) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(address, port), CONNECT_TIMEOUT_MILLIS);
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                return url.getProtocol().equals("https") ? startTls(socket, host, port) : socket;
+            } catch (IOException e) {
+                socket.close();
+                failure = e;
+            }
+        }
+        cache.invalidateAddresses(host);
+        throw failure != null ? failure : new UnknownHostException(host);
+    }
+
+    private Socket connectThrough(Proxy proxy, URL url, String host, int port) throws IOException {
+        Socket socket = proxy.type() == Proxy.Type.SOCKS ? new Socket(proxy) : new Socket();
+        try {
+            if (proxy.type() == Proxy.Type.SOCKS) {
+                socket.connect(InetSocketAddress.createUnresolved(host, port), CONNECT_TIMEOUT_MILLIS);
+            } else {
+                InetSocketAddress address = (InetSocketAddress) proxy.address();
+                if (address.isUnresolved()) address = new InetSocketAddress(address.getHostString(), address.getPort());
+                socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+            }
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            if (!url.getProtocol().equals("https")) return socket;
+            if (proxy.type() == Proxy.Type.HTTP) tunnel(socket, host + ":" + port);
+            return startTls(socket, host, port);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    // 通过 HTTP 代理建立到 authority 的隧道
+    private void tunnel(Socket socket, String authority) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(("CONNECT " + authority + " HTTP/1.1\r\nHost: " + authority + "\r\nUser-Agent: " + userAgent
+                + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        // 不能缓冲读取，TLS 握手的数据紧跟在响应头之后
+        InputStream in = socket.getInputStream();
+        String statusLine = readLine(in);
+        readHeaders(in, null);
+        String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2 || !parts[1].equals("200")) {
+            throw new IOException("Proxy CONNECT to " + authority + " failed: " + statusLine);
+        }
+    }
+
+    // 按主机名发送 SNI、校验证书
+    private static Socket startTls(Socket socket, String host, int port) throws IOException {
+        SSLSocket ssl = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                .createSocket(socket, host, port, true);
+        SSLParameters parameters = ssl.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        ssl.setSSLParameters(parameters);
+        ssl.startHandshake();
+        return ssl;
+    }
+
+    private static Proxy proxyFor(URL url) {
+        try {
+            URI uri = new URI(url.getProtocol(), null, hostOf(url), url.getPort(), "/", null, null);
+            List<Proxy> proxies = ProxySelector.getDefault().select(uri);
+            return proxies == null || proxies.isEmpty() ? Proxy.NO_PROXY : proxies.get(0);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return Proxy.NO_PROXY;
+        }
+    }
+
+    // raw 不为 null 时追加原样的头部行
+    private static Map<String, String> readHeaders(InputStream in, StringBuilder raw) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        int total = 0;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            total += line.length();
+            if (total > MAX_HEADER_BYTES) {
+                throw new IOException("Response headers too large");
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                if (raw != null) raw.append(line).append("\r\n");
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    // 读取全部正文，超过 maxBody 时截断（truncate）或抛出异常
+    private static byte[] readBody(InputStream in, int maxBody, boolean truncate) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            if (body.size() + n > maxBody) {
+                if (!truncate) throw new IOException("Response body exceeds " + maxBody + " bytes");
+                body.write(buffer, 0, maxBody - body.size());
+                break;
+            }
+            body.write(buffer, 0, n);
+        }
+        return body.toByteArray();
+    }
+
+    // 按 Content-Length 或分块编码读取正文，都没有时读到连接关闭
+    private static final class BodyInputStream extends InputStream {
+        private final InputStream in;
+        private final boolean chunked;
+        // 当前块（或整个正文）剩余的字节数，-1 表示读到连接关闭
+        private long remaining;
+        private boolean done;
+
+        BodyInputStream(InputStream in, Map<String, String> headers) throws IOException {
+            this.in = in;
+            String transferEncoding = headers.get("transfer-encoding");
+            chunked = transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked");
+            if (chunked) {
+                remaining = 0;
+                return;
+            }
+            String contentLength = headers.get("content-length");
+            remaining = -1;
+            if (contentLength != null) {
+                try {
+                    remaining = Long.parseLong(contentLength);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid Content-Length: " + contentLength);
+                }
+                done = remaining == 0;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) return -1;
+            if (len == 0) return 0;
+            if (chunked && remaining == 0 && !nextChunk()) return -1;
+            int n = in.read(b, off, remaining < 0 ? len : (int) Math.min(len, remaining));
+            if (n < 0) {
+                if (remaining > 0) throw new EOFException("Connection closed before end of body");
+                done = true;
+                return -1;
+            }
+            if (remaining > 0) {
+                remaining -= n;
+                if (remaining == 0) {
+                    if (chunked) readLine(in);
+                    else done = true;
+                }
+            }
+            return n;
+        }
+
+        // 读取下一块的长度，最后一块时读取尾部头部并返回 false
+        private boolean nextChunk() throws IOException {
+            String sizeLine = readLine(in);
+            int semicolon = sizeLine.indexOf(';');
+            long size;
+            try {
+                size = Long.parseLong((semicolon >= 0 ? sizeLine.substring(0, semicolon) : sizeLine).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid chunk size: " + sizeLine);
+            }
+            if (size == 0) {
+                readHeaders(in, null);
+                done = true;
+                return false;
+            }
+            remaining = size;
+            return true;
+        }
+    }
+
+    // 读取一行（ISO-8859-1，去掉 CRLF）
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                if (line.length() == 0) throw new EOFException("Connection closed");
+                break;
+            }
+            if (line.length() >= MAX_HEADER_BYTES) throw new IOException("Line too long");
+            if (c != '\r') line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    private static boolean isRedirect(int status) {
+        return status == 301 || status == 302 || status == 303 || status == 307 || status == 308;
+    }
+
+    private static String origin(URL url) {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return url.getProtocol() + "://" + hostOf(url).toLowerCase(Locale.ROOT) + ":" + port;
+    }
+
+    // 请求行中的路径（含查询串，不含片段），非 ASCII 字符按 UTF-8 百分号编码
+    private static String pathOf(URL url) {
+        String file = url.getFile();
+        return file.isEmpty() ? "/" : UrlCanonicalizer.encodeUnsafe(file);
+    }
+
+    // 国际化域名转为 ASCII
+    private static String hostOf(URL url) {
+        try {
+            return IDN.toASCII(url.getHost());
+        } catch (IllegalArgumentException e) {
+            return url.getHost();
+        }
+    }
+
+    // Host 头部的值
+    private static String authorityOf(URL url) {
+        String host = hostOf(url);
+        return url.getPort() != -1 && url.getPort() != url.getDefaultPort() ? host + ":" + url.getPort() : host;
+    }
+}
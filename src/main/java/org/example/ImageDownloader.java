@@ -0,0 +1,223 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 爬虫的图片下载：正文流式写入 img_&lt;地址哈希&gt;.part，完整下载后改名为 img_&lt;地址哈希&gt;.&lt;扩展名&gt;。
+ * <ul>
+ * <li>Content-Type 不是图片、Content-Length 超过上限时不读取正文</li>
+ * <li>写入前按文件头识别格式（{@link ImageProbe#format}），不是图片的不写入，扩展名按实际格式</li>
+ * <li>写入超过上限时中止并删除临时文件</li>
+ * <li>传输中断时保留临时文件，用 Range 和 If-Range 从已写入的位置续传（包括下次运行时），
+ * 服务器不支持范围请求或内容已变化时重新下载</li>
+ * </ul>
+ * 文件名由地址决定，已经下载过的图片不再请求。
+ * {@link #archive} 做同样的检查，但不写单独的文件，整个响应追加到 {@link CrawlArchive}。
+ */
+class ImageDownloader {
+
+    static final long DEFAULT_MAX_BYTES = 20 * 1024 * 1024;
+    // 传输中断后的续传次数
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String PART_SUFFIX = ".part";
+    // 续传时用于 If-Range 的校验值（强 ETag 或 Last-Modified）
+    private static final String VALIDATOR_SUFFIX = ".validator";
+    private static final String[] EXTENSIONS = {"jpg", "png", "gif", "webp", "avif", "bmp", "ico"};
+
+    private final HttpFetcher fetcher;
+    private final File directory;
+    private final long maxBytes;
+
+    ImageDownloader(HttpFetcher fetcher, File directory, long maxBytes) {
+        this.fetcher = fetcher;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    // 返回保存的文件；不是图片、超过大小上限或 HTTP 状态不是 2xx 时返回 null
+    File download(String url) throws IOException {
+        String name = "img_" + hash(url);
+        for (String extension : EXTENSIONS) {
+            File existing = new File(directory, name + "." + extension);
+            if (existing.isFile()) return existing;
+        }
+
+        File part = new File(directory, name + PART_SUFFIX);
+        File validator = new File(directory, name + PART_SUFFIX + VALIDATOR_SUFFIX);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                File saved = attempt(url, name, part, validator);
+                if (saved == null) {
+                    part.delete();
+                    validator.delete();
+                }
+                return saved;
+            } catch (IOException e) {
+                // 没有可续传的内容时不重试（连接失败、robots.txt 禁止等）
+                if (attempt == MAX_ATTEMPTS || part.length() == 0) throw e;
+            }
+        }
+    }
+
+    // 检查通过时把响应写入归档，返回图片的字节数，没有写入时返回 -1
+    long archive(String url, CrawlArchive archive) throws IOException {
+        return fetcher.stream(url, null, (head, body) -> {
+            if (head.status / 100 != 2 || !isImageType(head.header("content-type"))) return -1L;
+            if (contentLength(head) > maxBytes) return -1L;
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = body.read(buffer)) > 0) {
+                if (data.size() + n > maxBytes) return -1L;
+                data.write(buffer, 0, n);
+            }
+            byte[] bytes = data.toByteArray();
+            if (ImageProbe.format(bytes, Math.min(bytes.length, ImageProbe.SNIFF_BYTES)) == null) return -1L;
+            archive.write(head.withBody(bytes));
+            return (long) bytes.length;
+        });
+    }
+
+    private File attempt(String url, String name, File part, File validatorFile) throws IOException {
+        long offset = part.length();
+        String validator = offset > 0 && validatorFile.isFile()
+                ? new String(Files.readAllBytes(validatorFile.toPath()), StandardCharsets.UTF_8) : null;
+        Map<String, String> headers = null;
+        if (validator != null) {
+            headers = new LinkedHashMap<>();
+            headers.put("Range", "bytes=" + offset + "-");
+            // 内容变化时服务器返回完整的 200 响应
+            headers.put("If-Range", validator);
+        }
+        long start = validator != null ? offset : 0;
+        return fetcher.stream(url, headers, (head, body) -> save(head, body, start, name, part, validatorFile));
+    }
+
+    private File save(HttpFetcher.Response head, InputStream body, long start, String name, File part,
+                      File validatorFile) throws IOException {
+        if (head.status == 416) {
+            // 临时文件与服务器上的内容不符，下次从头下载
+            validatorFile.delete();
+            throw new IOException("Range not satisfiable: " + head.url);
+        }
+        if (head.status / 100 != 2 || !isImageType(head.header("content-type"))) return null;
+        boolean resumed = start > 0 && head.status == 206 && start == rangeStart(head.header("content-range"));
+        if (head.status == 206 && !resumed) {
+            validatorFile.delete();
+            throw new IOException("Unexpected partial content: " + head.url);
+        }
+        long offset = resumed ? start : 0;
+        long length = contentLength(head);
+        if (length >= 0 && offset + length > maxBytes) return null;
+
+        // 识别格式：续传时读取已写入的文件头，否则先读取正文开头
+        byte[] sniff = new byte[ImageProbe.SNIFF_BYTES];
+        int sniffed;
+        if (resumed) {
+            try (InputStream in = new FileInputStream(part)) {
+                sniffed = readFully(in, sniff);
+            }
+        } else {
+            sniffed = readFully(body, sniff);
+        }
+        String format = ImageProbe.format(sniff, sniffed);
+        if (format == null) return null;
+
+        if (!resumed) {
+            String etag = head.header("etag");
+            String validator = etag != null && !etag.startsWith("W/") ? etag : head.header("last-modified");
+            if (validator != null) {
+                Files.write(validatorFile.toPath(), validator.getBytes(StandardCharsets.UTF_8));
+            } else {
+                validatorFile.delete();
+            }
+        }
+
+        long total = offset;
+        try (OutputStream out = new FileOutputStream(part, resumed)) {
+            if (!resumed) {
+                out.write(sniff, 0, sniffed);
+                total += sniffed;
+            }
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = body.read(buffer)) > 0) {
+                total += n;
+                if (total > maxBytes) return null;
+                out.write(buffer, 0, n);
+            }
+        }
+
+        File target = new File(directory, name + "." + format);
+        try {
+            Files.move(part.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        validatorFile.delete();
+        return target;
+    }
+
+    // 没有 Content-Type 时按文件头判断
+    private static boolean isImageType(String contentType) {
+        if (contentType == null) return true;
+        String type = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return type.isEmpty() || type.startsWith("image/") || type.equals("application/octet-stream")
+                || type.equals("binary/octet-stream");
+    }
+
+    // Content-Range: bytes 100-199/200 中的起始位置，无法解析时返回 -1
+    private static long rangeStart(String contentRange) {
+        if (contentRange == null) return -1;
+        String range = contentRange.trim();
+        if (!range.toLowerCase(Locale.ROOT).startsWith("bytes ")) return -1;
+        int dash = range.indexOf('-');
+        if (dash < 0) return -1;
+        try {
+            return Long.parseLong(range.substring(6, dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long contentLength(HttpFetcher.Response head) {
+        String value = head.header("content-length");
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        int n;
+        while (total < buffer.length && (n = in.read(buffer, total, buffer.length - total)) > 0) {
+            total += n;
+        }
+        return total;
+    }
+
+    private static String hash(String url) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
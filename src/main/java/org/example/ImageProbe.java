@@ -0,0 +1,122 @@
+package org.example;
+
+/**
+ * 只读取图片文件头获取宽高，不解码整张图片（ImageIO.read 会解码全部像素）。
+ * 支持 PNG、JPEG、GIF、BMP 以及不带文件头的 DIB，无法识别时返回 null。
+ * {@link #format} 按文件头识别常见的网页图片格式。
+ */
+final class ImageProbe {
+
+    // 识别格式所需的文件头长度
+    static final int SNIFF_BYTES = 16;
+
+    private ImageProbe() {
+    }
+
+    // 返回 {宽, 高}
+    static int[] dimensions(byte[] data) {
+        if (data == null || data.length < 10) return null;
+
+        // PNG: 签名 + IHDR
+        if ((data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G') {
+            if (data.length < 24) return null;
+            return new int[]{bigEndianInt(data, 16), bigEndianInt(data, 20)};
+        }
+
+        // GIF
+        if (data[0] == 'G' && data[1] == 'I' && data[2] == 'F') {
+            return new int[]{littleEndianShort(data, 6), littleEndianShort(data, 8)};
+        }
+
+        // BMP
+        if (data[0] == 'B' && data[1] == 'M') {
+            if (data.length < 26) return null;
+            return new int[]{littleEndianInt(data, 18), Math.abs(littleEndianInt(data, 22))};
+        }
+
+        // JPEG: 查找 SOF 段
+        if ((data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8) {
+            return jpegDimensions(data);
+        }
+
+        // DIB（xls 中的 PICTURE_TYPE_DIB 没有 BITMAPFILEHEADER）
+        if (littleEndianInt(data, 0) == 40 && data.length >= 12) {
+            return new int[]{littleEndianInt(data, 4), Math.abs(littleEndianInt(data, 8))};
+        }
+
+        return null;
+    }
+
+    // 按文件头（魔数）识别图片格式，返回扩展名，不是图片时返回 null
+    static String format(byte[] head, int length) {
+        if (length >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (length >= 8 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G'
+                && head[4] == 0x0D && head[5] == 0x0A && head[6] == 0x1A && head[7] == 0x0A) {
+            return "png";
+        }
+        if (length >= 6 && startsWith(head, 0, "GIF8") && (head[4] == '7' || head[4] == '9') && head[5] == 'a') {
+            return "gif";
+        }
+        if (length >= 12 && startsWith(head, 0, "RIFF") && startsWith(head, 8, "WEBP")) {
+            return "webp";
+        }
+        if (length >= 12 && startsWith(head, 4, "ftyp") && (startsWith(head, 8, "avif") || startsWith(head, 8, "avis"))) {
+            return "avif";
+        }
+        if (length >= 14 && head[0] == 'B' && head[1] == 'M') {
+            return "bmp";
+        }
+        if (length >= 4 && head[0] == 0 && head[1] == 0 && head[2] == 1 && head[3] == 0) {
+            return "ico";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, String magic) {
+        for (int i = 0; i < magic.length(); i++) {
+            if (data[offset + i] != magic.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int[] jpegDimensions(byte[] data) {
+        int pos = 2;
+        while (pos + 9 < data.length) {
+            if ((data[pos] & 0xFF) != 0xFF) return null;
+            int marker = data[pos + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // 填充字节
+                pos++;
+                continue;
+            }
+            int length = bigEndianShort(data, pos + 2);
+            boolean sof = marker >= 0xC0 && marker <= 0xCF
+                    && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (sof) {
+                return new int[]{bigEndianShort(data, pos + 7), bigEndianShort(data, pos + 5)};
+            }
+            pos += 2 + length;
+        }
+        return null;
+    }
+
+    private static int bigEndianInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    private static int bigEndianShort(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static int littleEndianInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8)
+                | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24);
+    }
+
+    private static int littleEndianShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
+    }
+}
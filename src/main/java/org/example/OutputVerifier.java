@@ -0,0 +1,473 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 转换结果校验：比较源 .xls 和生成的 .xlsx 内容是否等价。
+ * <p>
+ * 两个工作簿都以只读方式打开，每个工作表按行号、列号同时顺序遍历两边的行和单元格，
+ * 比较值、类型、公式、样式（按结构比较，不比较样式下标）、合并区域、列宽和图片内容的哈希；
+ * 各工作表并行比较。比较规则跟随转换选项：
+ * 折叠空白单元格时，输出中缺少的空白单元格按行、列默认样式比较；只保留公式时不比较公式结果；
+ * 优化图片时只比较图片数量。
+ * <p>
+ * 既可以在测试中调用 {@link VerificationReport#assertEquivalent()}，也可以在命令行抽查生产环境的输出。
+ */
+public final class OutputVerifier {
+
+    static final int MAX_DIFFERENCES_PER_SHEET = 100;
+
+    private OutputVerifier() {
+    }
+
+    public static VerificationReport verify(File source, File output) throws Exception {
+        return verify(source, output, ConversionOptions.defaults());
+    }
+
+    // options 为转换时使用的选项
+    public static VerificationReport verify(File source, File output, ConversionOptions options) throws Exception {
+        long start = System.nanoTime();
+        VerificationReport report = new VerificationReport();
+
+        try (Workbook expected = XlsInput.openWorkbook(source, options.getPassword());
+             Workbook actual = XlsInput.openWorkbook(output)) {
+
+            int sheets = Math.min(expected.getNumberOfSheets(), actual.getNumberOfSheets());
+            if (expected.getNumberOfSheets() != actual.getNumberOfSheets()) {
+                report.add(new VerificationReport.Difference(VerificationReport.Kind.SHEET, null, null,
+                        expected.getNumberOfSheets() + " sheets", actual.getNumberOfSheets() + " sheets"));
+            }
+
+            // 解析绘图对象会修改工作表的记录，先在当前线程中取出图片
+            List<List<PictureData>> expectedPictures = new ArrayList<>();
+            List<List<PictureData>> actualPictures = new ArrayList<>();
+            for (int i = 0; i < sheets; i++) {
+                expectedPictures.add(pictures(expected.getSheetAt(i)));
+                actualPictures.add(pictures(actual.getSheetAt(i)));
+            }
+
+            StyleSignatures expectedStyles = new StyleSignatures(expected);
+            StyleSignatures actualStyles = new StyleSignatures(actual);
+
+            ExecutorService executor = Executors.newFixedThreadPool(
+                    Math.max(1, Math.min(sheets, Runtime.getRuntime().availableProcessors())));
+            try {
+                List<Future<SheetComparison>> futures = new ArrayList<>();
+                for (int i = 0; i < sheets; i++) {
+                    SheetComparison comparison = new SheetComparison(expected.getSheetAt(i), actual.getSheetAt(i),
+                            expectedStyles, actualStyles, options, expectedPictures.get(i), actualPictures.get(i));
+                    futures.add(executor.submit(comparison));
+                }
+                for (Future<SheetComparison> future : futures) {
+                    SheetComparison comparison;
+                    try {
+                        comparison = future.get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        throw cause instanceof Exception ? (Exception) cause : e;
+                    }
+                    report.addSheet(comparison.differences, comparison.suppressed, comparison.cells);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    // 比较一个工作表，只读访问两个工作表
+    private static class SheetComparison implements Callable<SheetComparison> {
+        private final Sheet expected;
+        private final Sheet actual;
+        private final StyleSignatures expectedStyles;
+        private final StyleSignatures actualStyles;
+        private final ConversionOptions options;
+        private final List<PictureData> expectedPictures;
+        private final List<PictureData> actualPictures;
+
+        final List<VerificationReport.Difference> differences = new ArrayList<>();
+        long suppressed;
+        long cells;
+
+        SheetComparison(Sheet expected, Sheet actual, StyleSignatures expectedStyles, StyleSignatures actualStyles,
+                        ConversionOptions options, List<PictureData> expectedPictures,
+                        List<PictureData> actualPictures) {
+            this.expected = expected;
+            this.actual = actual;
+            this.expectedStyles = expectedStyles;
+            this.actualStyles = actualStyles;
+            this.options = options;
+            this.expectedPictures = expectedPictures;
+            this.actualPictures = actualPictures;
+        }
+
+        @Override
+        public SheetComparison call() throws Exception {
+            if (!expected.getSheetName().equals(actual.getSheetName())) {
+                difference(VerificationReport.Kind.SHEET, null, expected.getSheetName(), actual.getSheetName());
+            }
+            int columns = compareRows();
+            compareMerges();
+            compareColumns(columns);
+            comparePictures();
+            return this;
+        }
+
+        // 按行号合并遍历两边的行，返回用到的最大列数
+        private int compareRows() {
+            Iterator<Row> expectedRows = expected.rowIterator();
+            Iterator<Row> actualRows = actual.rowIterator();
+            Row e = next(expectedRows);
+            Row a = next(actualRows);
+            int columns = 0;
+            while (e != null || a != null) {
+                int er = e == null ? Integer.MAX_VALUE : e.getRowNum();
+                int ar = a == null ? Integer.MAX_VALUE : a.getRowNum();
+                if (e != null) columns = Math.max(columns, e.getLastCellNum());
+                if (a != null) columns = Math.max(columns, a.getLastCellNum());
+
+                if (er == ar) {
+                    compareCells(e, a);
+                    e = next(expectedRows);
+                    a = next(actualRows);
+                } else if (er < ar) {
+                    compareCells(e, null);
+                    e = next(expectedRows);
+                } else {
+                    compareCells(null, a);
+                    a = next(actualRows);
+                }
+            }
+            return columns;
+        }
+
+        private void compareCells(Row expectedRow, Row actualRow) {
+            Iterator<Cell> expectedCells = expectedRow == null ? Collections.emptyIterator() : expectedRow.cellIterator();
+            Iterator<Cell> actualCells = actualRow == null ? Collections.emptyIterator() : actualRow.cellIterator();
+            Cell e = next(expectedCells);
+            Cell a = next(actualCells);
+            while (e != null || a != null) {
+                int ec = e == null ? Integer.MAX_VALUE : e.getColumnIndex();
+                int ac = a == null ? Integer.MAX_VALUE : a.getColumnIndex();
+                cells++;
+                if (ec == ac) {
+                    compareCell(e, a);
+                    e = next(expectedCells);
+                    a = next(actualCells);
+                } else if (ec < ac) {
+                    compareMissing(e, actualRow);
+                    e = next(expectedCells);
+                } else {
+                    difference(VerificationReport.Kind.TYPE, address(a), "no cell", a.getCellType().toString());
+                    a = next(actualCells);
+                }
+            }
+        }
+
+        private void compareCell(Cell e, Cell a) {
+            String location = address(e);
+            CellType type = e.getCellType();
+            if (type != a.getCellType()) {
+                difference(VerificationReport.Kind.TYPE, location, type.toString(), a.getCellType().toString());
+                return;
+            }
+
+            switch (type) {
+                case STRING:
+                    compareValue(location, e.getStringCellValue(), a.getStringCellValue());
+                    break;
+                case NUMERIC:
+                    compareValue(location, e.getNumericCellValue(), a.getNumericCellValue());
+                    break;
+                case BOOLEAN:
+                    compareValue(location, e.getBooleanCellValue(), a.getBooleanCellValue());
+                    break;
+                case ERROR:
+                    compareValue(location, e.getErrorCellValue(), a.getErrorCellValue());
+                    break;
+                case FORMULA:
+                    compareFormula(location, e, a);
+                    break;
+                default:
+                    break;
+            }
+            compareStyle(location, e.getCellStyle(), a.getCellStyle());
+        }
+
+        private void compareFormula(String location, Cell e, Cell a) {
+            if (!e.getCellFormula().equals(a.getCellFormula())) {
+                difference(VerificationReport.Kind.FORMULA, location, e.getCellFormula(), a.getCellFormula());
+                return;
+            }
+            // 只有保留缓存结果时结果才应完全一致（重新计算的结果可能与旧的缓存不同）
+            if (options.getFormulaMode() != FormulaMode.CACHED_VALUE) return;
+
+            CellType resultType = e.getCachedFormulaResultType();
+            if (resultType != a.getCachedFormulaResultType()) {
+                difference(VerificationReport.Kind.VALUE, location, "cached " + resultType,
+                        "cached " + a.getCachedFormulaResultType());
+                return;
+            }
+            switch (resultType) {
+                case STRING:
+                    compareValue(location, e.getStringCellValue(), a.getStringCellValue());
+                    break;
+                case NUMERIC:
+                    compareValue(location, e.getNumericCellValue(), a.getNumericCellValue());
+                    break;
+                case BOOLEAN:
+                    compareValue(location, e.getBooleanCellValue(), a.getBooleanCellValue());
+                    break;
+                case ERROR:
+                    compareValue(location, e.getErrorCellValue(), a.getErrorCellValue());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // 输出中没有对应单元格：只允许是折叠掉的空白单元格
+        private void compareMissing(Cell e, Row actualRow) {
+            String location = address(e);
+            if (e.getCellType() != CellType.BLANK || !options.isCollapseBlankCells()) {
+                difference(VerificationReport.Kind.TYPE, location, e.getCellType().toString(), "no cell");
+                return;
+            }
+
+            // 与 BlankCellCollapser 相同：源位置有行、列默认样式时，输出中的默认样式必须与单元格样式相同，
+            // 否则单元格样式必须在空单元格上不可见
+            Row expectedRow = e.getRow();
+            boolean rowStyled = expectedRow.isFormatted() && expectedRow.getRowStyle() != null;
+            if (rowStyled || expected.getColumnStyle(e.getColumnIndex()) != null) {
+                CellStyle effective = rowStyled && actualRow != null && actualRow.isFormatted()
+                        ? actualRow.getRowStyle()
+                        : actual.getColumnStyle(e.getColumnIndex());
+                if (effective == null) {
+                    difference(VerificationReport.Kind.STYLE, location, expectedStyles.of(e.getCellStyle()), "no cell");
+                } else {
+                    compareStyle(location, e.getCellStyle(), effective);
+                }
+            } else if (!isInert(e.getCellStyle())) {
+                difference(VerificationReport.Kind.STYLE, location, expectedStyles.of(e.getCellStyle()),
+                        "no cell");
+            }
+        }
+
+        private void compareStyle(String location, CellStyle e, CellStyle a) {
+            String expectedSignature = expectedStyles.of(e);
+            String actualSignature = actualStyles.of(a);
+            if (!expectedSignature.equals(actualSignature)) {
+                difference(VerificationReport.Kind.STYLE, location, expectedSignature, actualSignature);
+            }
+        }
+
+        private void compareValue(String location, Object e, Object a) {
+            if (!e.equals(a)) {
+                difference(VerificationReport.Kind.VALUE, location, String.valueOf(e), String.valueOf(a));
+            }
+        }
+
+        private void compareMerges() {
+            Set<String> e = new TreeSet<>();
+            for (CellRangeAddress region : expected.getMergedRegions()) {
+                e.add(region.formatAsString());
+            }
+            Set<String> a = new TreeSet<>();
+            for (CellRangeAddress region : actual.getMergedRegions()) {
+                a.add(region.formatAsString());
+            }
+            if (!e.equals(a)) {
+                difference(VerificationReport.Kind.MERGE, null, e.toString(), a.toString());
+            }
+        }
+
+        private void compareColumns(int columns) {
+            for (int col = 0; col < columns; col++) {
+                int ew = expected.getColumnWidth(col);
+                int aw = actual.getColumnWidth(col);
+                boolean eh = expected.isColumnHidden(col);
+                boolean ah = actual.isColumnHidden(col);
+                if (ew != aw || eh != ah) {
+                    difference(VerificationReport.Kind.COLUMN, CellReference.convertNumToColString(col),
+                            ew + (eh ? " hidden" : ""), aw + (ah ? " hidden" : ""));
+                }
+            }
+        }
+
+        // 按内容哈希比较，不比较位置；图片优化会重新编码，此时只比较数量
+        private void comparePictures() throws NoSuchAlgorithmException {
+            if (options.isOptimizePictures()) {
+                if (expectedPictures.size() != actualPictures.size()) {
+                    difference(VerificationReport.Kind.PICTURE, null, expectedPictures.size() + " picture(s)",
+                            actualPictures.size() + " picture(s)");
+                }
+                return;
+            }
+            List<String> e = hashes(expectedPictures);
+            List<String> a = hashes(actualPictures);
+            if (!e.equals(a)) {
+                difference(VerificationReport.Kind.PICTURE, null, e.size() + " picture(s) " + e,
+                        a.size() + " picture(s) " + a);
+            }
+        }
+
+        private void difference(VerificationReport.Kind kind, String location, String e, String a) {
+            if (differences.size() < MAX_DIFFERENCES_PER_SHEET) {
+                differences.add(new VerificationReport.Difference(kind, expected.getSheetName(), location, e, a));
+            } else {
+                suppressed++;
+            }
+        }
+
+        private static <T> T next(Iterator<T> iterator) {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        private static String address(Cell cell) {
+            return new CellReference(cell).formatAsString(false);
+        }
+    }
+
+    // 空单元格上不可见的样式（与 BlankCellCollapser 的判断一致）
+    private static boolean isInert(CellStyle style) {
+        return style.getFillPattern() == FillPatternType.NO_FILL
+                && style.getBorderTop() == BorderStyle.NONE
+                && style.getBorderBottom() == BorderStyle.NONE
+                && style.getBorderLeft() == BorderStyle.NONE
+                && style.getBorderRight() == BorderStyle.NONE;
+    }
+
+    // 样式的结构签名，按样式下标缓存；只比较可见的属性（无填充时不比较填充色，无边框时不比较边框色）
+    private static class StyleSignatures {
+        private final Workbook workbook;
+        private final Map<Integer, String> signatures = new ConcurrentHashMap<>();
+
+        StyleSignatures(Workbook workbook) {
+            this.workbook = workbook;
+        }
+
+        String of(CellStyle style) {
+            return signatures.computeIfAbsent(style.getIndex() & 0xFFFF, index -> signature(style));
+        }
+
+        private String signature(CellStyle style) {
+            StringBuilder s = new StringBuilder();
+            s.append("align=").append(style.getAlignment())
+                    .append(",valign=").append(style.getVerticalAlignment())
+                    .append(",wrap=").append(style.getWrapText())
+                    .append(",indent=").append(style.getIndention())
+                    .append(",rotation=").append(style.getRotation())
+                    .append(",hidden=").append(style.getHidden())
+                    .append(",locked=").append(style.getLocked())
+                    .append(",format=").append(style.getDataFormatString());
+            border(s, "top", style.getBorderTop(), style.getTopBorderColor());
+            border(s, "bottom", style.getBorderBottom(), style.getBottomBorderColor());
+            border(s, "left", style.getBorderLeft(), style.getLeftBorderColor());
+            border(s, "right", style.getBorderRight(), style.getRightBorderColor());
+            s.append(",fill=").append(style.getFillPattern());
+            if (style.getFillPattern() != FillPatternType.NO_FILL) {
+                s.append('/').append(style.getFillForegroundColor()).append('/').append(style.getFillBackgroundColor());
+            }
+
+            Font font = workbook.getFontAt(style.getFontIndex());
+            s.append(",font=").append(font.getFontName())
+                    .append('/').append(font.getFontHeight())
+                    .append(font.getBold() ? "/bold" : "")
+                    .append(font.getItalic() ? "/italic" : "")
+                    .append(font.getStrikeout() ? "/strike" : "")
+                    .append("/underline").append(font.getUnderline())
+                    .append("/offset").append(font.getTypeOffset())
+                    .append("/color").append(fontColor(font));
+            return s.toString();
+        }
+
+        // .xls 的“自动”字体颜色写入 .xlsx 时由 POI 换成黑色，两者视为相同
+        private static short fontColor(Font font) {
+            return font.getColor() == Font.COLOR_NORMAL ? IndexedColors.BLACK.getIndex() : font.getColor();
+        }
+
+        private static void border(StringBuilder s, String side, BorderStyle border, short color) {
+            s.append(',').append(side).append('=').append(border);
+            if (border != BorderStyle.NONE) {
+                s.append('/').append(color);
+            }
+        }
+    }
+
+    private static List<PictureData> pictures(Sheet sheet) {
+        List<PictureData> pictures = new ArrayList<>();
+        Drawing<?> drawing = sheet.getDrawingPatriarch();
+        if (drawing == null) return pictures;
+        for (Shape shape : drawing) {
+            if (shape instanceof Picture) {
+                PictureData data = ((Picture) shape).getPictureData();
+                if (data != null) pictures.add(data);
+            }
+        }
+        return pictures;
+    }
+
+    private static List<String> hashes(List<PictureData> pictures) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        List<String> hashes = new ArrayList<>();
+        for (PictureData picture : pictures) {
+            byte[] hash = digest.digest(picture.getData());
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            hashes.add(hex.toString());
+        }
+        Collections.sort(hashes);
+        return hashes;
+    }
+
+    /**
+     * 命令行：
+     * <pre>
+     * OutputVerifier source.xls output.xlsx
+     * OutputVerifier --sample 目录 数量     随机抽查目录下已有同名 .xlsx 的 .xls
+     * </pre>
+     * 有差异时退出码为 1。
+     */
+    public static void main(String[] args) throws Exception {
+        List<File[]> pairs = new ArrayList<>();
+        if (args.length == 3 && "--sample".equals(args[0])) {
+            File[] sources = new File(args[1]).listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".xls"));
+            List<File[]> candidates = new ArrayList<>();
+            if (sources != null) {
+                for (File source : sources) {
+                    String name = source.getName();
+                    File output = new File(source.getParentFile(), name.substring(0, name.length() - 4) + ".xlsx");
+                    if (output.isFile()) candidates.add(new File[]{source, output});
+                }
+            }
+            Collections.shuffle(candidates);
+            pairs.addAll(candidates.subList(0, Math.min(Integer.parseInt(args[2]), candidates.size())));
+        } else if (args.length == 2) {
+            pairs.add(new File[]{new File(args[0]), new File(args[1])});
+        } else {
+            System.err.println("Usage: OutputVerifier <source.xls> <output.xlsx>");
+            System.err.println("       OutputVerifier --sample <dir> <count>");
+            System.exit(2);
+        }
+
+        boolean allEquivalent = true;
+        for (File[] pair : pairs) {
+            VerificationReport report = verify(pair[0], pair[1]);
+            System.out.println(pair[0] + " -> " + pair[1] + ": " + report);
+            allEquivalent &= report.isEquivalent();
+        }
+        System.exit(allEquivalent ? 0 : 1);
+    }
+}
@@ -0,0 +1,240 @@
+package org.example;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 写出 xlsx 包时按部件并行压缩的 zip 输出流。
+ * <p>
+ * POI 的 {@code ZipPackage} 发现传入的已经是 {@link ZipArchiveOutputStream} 时会直接向其写入各个部件，
+ * 这里截获每个部件的内容，每个部件作为独立的 deflate 流提交到线程池压缩，
+ * 最后按原顺序以 raw entry 写入真正的 zip，因此部件顺序与 POI 原来的输出一致。
+ * 已经压缩过的图片（JPEG、PNG 等）可以直接以 STORED 方式保存。
+ * 部件在压缩前可以由 {@link PartRewriter} 替换内容（见 {@link RowBlockWriter}）。
+ * <p>
+ * 只有并行压缩时才缓存所有部件直到 {@link #finish()}。没有线程池时部件边序列化边压缩写出，
+ * 内存中不保留整个部件，写出过程中的检查点（见 ConversionGuard#watch）也能及时生效；
+ * 只有要替换内容或以 STORED 保存（需要预先知道 CRC 和长度）的部件才单独缓存，处理完立即写出。
+ */
+class ParallelZipOutputStream extends ZipArchiveOutputStream {
+
+    // 已压缩格式，deflate 几乎没有收益
+    private static final String[] COMPRESSED_MEDIA = {
+            ".jpeg", ".jpg", ".png", ".gif", ".tiff", ".tif", ".wdp"
+    };
+
+    // 每个压缩线程复用一个 Deflater 和输出缓冲区，避免每个部件重新分配本地内存
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(
+            Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+    private final ZipArchiveOutputStream target;
+    private final ExecutorService executor;
+    private final int level;
+    private final boolean storeMedia;
+    private final PartRewriter rewriter;
+
+    private final List<ZipArchiveEntry> entries = new ArrayList<>();
+    private final List<Future<byte[]>> contents = new ArrayList<>();
+
+    private ZipArchiveEntry currentEntry;
+    // 当前部件直接写入 target 时为 null
+    private ByteArrayOutputStream currentData;
+    private boolean finished;
+
+    // 在压缩前替换部件内容，在写出线程中按部件顺序调用
+    interface PartRewriter {
+        // name 为 zip 中的部件名（不带开头的 /）；返回 false 的部件不缓存，也不会调用 rewrite
+        boolean rewrites(String name);
+
+        // 不需要替换时原样返回 data
+        byte[] rewrite(String name, byte[] data) throws IOException;
+    }
+
+    /**
+     * @param out        最终输出
+     * @param executor   压缩线程池，为 null 时在当前线程压缩
+     * @param level      deflate 压缩级别，0 表示全部以 STORED 保存
+     * @param storeMedia 已压缩的图片是否直接以 STORED 保存
+     */
+    ParallelZipOutputStream(OutputStream out, ExecutorService executor, int level, boolean storeMedia) {
+        this(out, executor, level, storeMedia, null);
+    }
+
+    // rewriter 为 null 时部件原样写出
+    ParallelZipOutputStream(OutputStream out, ExecutorService executor, int level, boolean storeMedia,
+                            PartRewriter rewriter) {
+        super(new NullOutputStream());
+        this.target = new ZipArchiveOutputStream(out);
+        if (level != Deflater.NO_COMPRESSION) {
+            target.setLevel(level);
+        }
+        this.executor = executor;
+        this.level = level;
+        this.storeMedia = storeMedia;
+        this.rewriter = rewriter;
+    }
+
+    @Override
+    public void putArchiveEntry(ArchiveEntry archiveEntry) throws IOException {
+        if (currentEntry != null) {
+            closeArchiveEntry();
+        }
+        currentEntry = (ZipArchiveEntry) archiveEntry;
+        String name = currentEntry.getName();
+        if (executor == null && !isStored(name) && (rewriter == null || !rewriter.rewrites(name))) {
+            currentEntry.setMethod(ZipArchiveEntry.DEFLATED);
+            target.putArchiveEntry(currentEntry);
+            currentData = null;
+        } else {
+            currentData = new ByteArrayOutputStream();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+        if (currentEntry == null) {
+            throw new IllegalStateException("No current entry");
+        }
+        if (currentData == null) {
+            target.write(b, offset, length);
+        } else {
+            currentData.write(b, offset, length);
+        }
+    }
+
+    @Override
+    public void closeArchiveEntry() throws IOException {
+        if (currentEntry == null) return;
+
+        ZipArchiveEntry entry = currentEntry;
+        ByteArrayOutputStream captured = currentData;
+        currentEntry = null;
+        currentData = null;
+        if (captured == null) {
+            target.closeArchiveEntry();
+            return;
+        }
+
+        byte[] data = captured.toByteArray();
+        if (rewriter != null && rewriter.rewrites(entry.getName())) {
+            data = rewriter.rewrite(entry.getName(), data);
+        }
+        boolean store = isStored(entry.getName());
+        if (executor == null) {
+            // 没有线程池时压缩后立即写出，不等到 finish
+            target.addRawArchiveEntry(entry, new ByteArrayInputStream(compress(entry, data, store)));
+            return;
+        }
+        byte[] part = data;
+        contents.add(executor.submit(() -> compress(entry, part, store)));
+        entries.add(entry);
+    }
+
+    @Override
+    public void flush() {
+        // 内容在 finish 时才真正写出
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (finished) return;
+        closeArchiveEntry();
+
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                // get() 之后压缩任务对 entry 的修改可见
+                byte[] raw = contents.get(i).get();
+                target.addRawArchiveEntry(entries.get(i), new ByteArrayInputStream(raw));
+                // 写出后释放
+                contents.set(i, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing package parts", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error compressing package part", e.getCause());
+        }
+
+        target.finish();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+            target.close();
+        } finally {
+            super.close();
+        }
+    }
+
+    // 压缩单个部件，并在 entry 上记录 raw 写入所需的 CRC 和大小
+    private byte[] compress(ZipArchiveEntry entry, byte[] data, boolean store) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        entry.setCrc(crc.getValue());
+        entry.setSize(data.length);
+
+        if (store) {
+            entry.setMethod(ZipArchiveEntry.STORED);
+            entry.setCompressedSize(data.length);
+            return data;
+        }
+
+        Deflater deflater = DEFLATER.get();
+        byte[] buffer = BUFFER.get();
+        try {
+            deflater.setLevel(level);
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            byte[] compressed = out.toByteArray();
+            entry.setMethod(ZipArchiveEntry.DEFLATED);
+            entry.setCompressedSize(compressed.length);
+            return compressed;
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    private boolean isStored(String name) {
+        return level == Deflater.NO_COMPRESSION || (storeMedia && isCompressedMedia(name));
+    }
+
+    private static boolean isCompressedMedia(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String extension : COMPRESSED_MEDIA) {
+            if (lower.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    // 父类需要一个输出流，实际数据写入 target
+    private static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package org.example;
+
+import org.apache.poi.hssf.usermodel.HSSFClientAnchor;
+import org.apache.poi.ss.usermodel.ClientAnchor;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.util.Units;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 可选的图片优化：DIB/BMP 转为 PNG，比显示尺寸大得多的图片缩小，JPEG 按指定质量重新压缩。
+ * <p>
+ * 显示尺寸由源工作表中的锚点和列宽、行高算出，缩小时保留 {@link #OVERSAMPLING} 倍，放大查看和打印时仍然清晰。
+ * 输出中图片的显示大小由锚点决定，与像素尺寸无关，缩小后显示效果不变。
+ * 重新编码后没有变小的图片保留原数据；EMF、WMF 等矢量图和无法解码的图片不处理。
+ * 各图片在共享线程池中并行处理，转换线程在复制单元格的同时等待结果。
+ */
+final class PictureOptimizer {
+
+    // 缩小时保留的显示尺寸倍数
+    static final int OVERSAMPLING = 2;
+
+    // 解码后的位图可能很大，限制同时处理的图片数
+    private static final ExecutorService POOL = newExecutor();
+
+    // 优化结果
+    static class Result {
+        final byte[] data;
+        final String mimeType;
+
+        Result(byte[] data, String mimeType) {
+            this.data = data;
+            this.mimeType = mimeType;
+        }
+    }
+
+    private PictureOptimizer() {
+    }
+
+    // 提交到共享线程池；任务不会抛出异常，处理失败时返回原数据
+    static Future<Result> submit(byte[] data, String mimeType, int[] displaySize, float jpegQuality) {
+        return POOL.submit(() -> optimize(data, mimeType, displaySize, jpegQuality));
+    }
+
+    static Result optimize(byte[] data, String mimeType, int[] displaySize, float jpegQuality) {
+        Result original = new Result(data, mimeType);
+        String type = mimeType == null ? "" : mimeType.toLowerCase();
+        boolean bitmap = type.equals("image/dib") || type.equals("image/bmp");
+        boolean jpeg = type.equals("image/jpeg");
+        if (!bitmap && !jpeg && !type.equals("image/png")) return original;
+
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bitmap ? withBitmapHeader(data) : data));
+            if (image == null) return original;
+
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int targetWidth = width;
+            int targetHeight = height;
+            if (displaySize != null && displaySize[0] > 0 && displaySize[1] > 0) {
+                double scale = Math.min((double) displaySize[0] * OVERSAMPLING / width,
+                        (double) displaySize[1] * OVERSAMPLING / height);
+                if (scale < 1) {
+                    targetWidth = Math.max(1, (int) Math.round(width * scale));
+                    targetHeight = Math.max(1, (int) Math.round(height * scale));
+                }
+            }
+            boolean scaled = targetWidth != width || targetHeight != height;
+            // 不需要缩小的 PNG 保持原样
+            if (!scaled && !bitmap && !jpeg) return original;
+            if (scaled) {
+                image = downscale(image, targetWidth, targetHeight);
+            }
+
+            byte[] encoded = jpeg ? encodeJpeg(image, jpegQuality) : encodePng(image);
+            // DIB 总是转为 PNG；其它格式只在变小时替换
+            if (encoded == null || (!bitmap && encoded.length >= data.length)) return original;
+            return new Result(encoded, jpeg ? "image/jpeg" : "image/png");
+        } catch (Exception | OutOfMemoryError e) {
+            return original;
+        }
+    }
+
+    /**
+     * 图片在源工作表中的显示尺寸（像素），算不出来时返回 null。
+     * HSSF 锚点的偏移量以单元格宽的 1/1024、行高的 1/256 为单位，其它锚点以 EMU 为单位。
+     */
+    static int[] displaySize(Sheet sheet, ClientAnchor anchor) {
+        try {
+            boolean hssf = anchor instanceof HSSFClientAnchor;
+            double width = 0;
+            for (int col = anchor.getCol1(); col <= anchor.getCol2(); col++) {
+                width += sheet.getColumnWidthInPixels(col);
+            }
+            width -= offset(anchor.getDx1(), sheet.getColumnWidthInPixels(anchor.getCol1()), hssf, 1024);
+            width -= sheet.getColumnWidthInPixels(anchor.getCol2())
+                    - offset(anchor.getDx2(), sheet.getColumnWidthInPixels(anchor.getCol2()), hssf, 1024);
+
+            double height = 0;
+            for (int row = anchor.getRow1(); row <= anchor.getRow2(); row++) {
+                height += rowHeightInPixels(sheet, row);
+            }
+            height -= offset(anchor.getDy1(), rowHeightInPixels(sheet, anchor.getRow1()), hssf, 256);
+            height -= rowHeightInPixels(sheet, anchor.getRow2())
+                    - offset(anchor.getDy2(), rowHeightInPixels(sheet, anchor.getRow2()), hssf, 256);
+
+            if (width < 1 || height < 1) return null;
+            return new int[]{(int) Math.ceil(width), (int) Math.ceil(height)};
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static double offset(int value, double cellPixels, boolean hssf, int hssfUnits) {
+        return hssf ? cellPixels * value / hssfUnits : (double) value / Units.EMU_PER_PIXEL;
+    }
+
+    private static double rowHeightInPixels(Sheet sheet, int rowIndex) {
+        Row row = sheet.getRow(rowIndex);
+        float points = row != null ? row.getHeightInPoints() : sheet.getDefaultRowHeightInPoints();
+        return Units.pointsToPixel(points);
+    }
+
+    // xls 中的 DIB 没有 BITMAPFILEHEADER，补上后 ImageIO 才能读取
+    private static byte[] withBitmapHeader(byte[] data) {
+        if (data.length >= 2 && data[0] == 'B' && data[1] == 'M') return data;
+
+        int headerSize = littleEndianInt(data, 0);
+        int bitCount = (data[14] & 0xFF) | (data[15] & 0xFF) << 8;
+        int colorsUsed = data.length >= 36 ? littleEndianInt(data, 32) : 0;
+        int paletteEntries = colorsUsed != 0 ? colorsUsed : bitCount <= 8 ? 1 << bitCount : 0;
+        int compression = littleEndianInt(data, 16);
+        // BI_BITFIELDS 的颜色掩码跟在 40 字节的信息头后面
+        int masks = compression == 3 && headerSize == 40 ? 12 : 0;
+        int pixelOffset = 14 + headerSize + masks + paletteEntries * 4;
+
+        byte[] file = new byte[14 + data.length];
+        file[0] = 'B';
+        file[1] = 'M';
+        putLittleEndianInt(file, 2, file.length);
+        putLittleEndianInt(file, 10, pixelOffset);
+        System.arraycopy(data, 0, file, 14, data.length);
+        return file;
+    }
+
+    // 先逐次减半再缩放到目标尺寸，避免一次大幅缩小时的锯齿
+    private static BufferedImage downscale(BufferedImage image, int width, int height) {
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return ImageIO.write(image, "png", out) ? out.toByteArray() : null;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        // JPEG 不支持透明通道
+        if (image.getColorModel().hasAlpha()) {
+            BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = rgb.createGraphics();
+            try {
+                g.drawImage(image, 0, 0, java.awt.Color.WHITE, null);
+            } finally {
+                g.dispose();
+            }
+            image = rgb;
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static int littleEndianInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+    }
+
+    private static void putLittleEndianInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) value;
+        data[offset + 1] = (byte) (value >>> 8);
+        data[offset + 2] = (byte) (value >>> 16);
+        data[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static ExecutorService newExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "xls-picture-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,153 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 一个站点的 robots.txt 规则（RFC 9309）。
+ * <p>
+ * 只取与本爬虫产品名匹配的分组，没有时取 {@code User-agent: *} 的分组；多个匹配的分组合并。
+ * 路径按最长匹配的规则决定，长度相同时 Allow 优先；规则支持 {@code *} 通配符和结尾的 {@code $}。
+ */
+final class RobotsRules {
+
+    // RFC 9309 要求至少解析 500 KiB
+    static final int MAX_BYTES = 500 * 1024;
+    // 更长的规则忽略
+    static final int MAX_PATTERN_LENGTH = 2048;
+
+    private static final RobotsRules ALLOW_ALL = new RobotsRules(new ArrayList<>(), false);
+    private static final RobotsRules DISALLOW_ALL = new RobotsRules(new ArrayList<>(), true);
+
+    private final List<Rule> rules;
+    // robots.txt 暂时无法获取，整个站点都不抓取
+    private final boolean unavailable;
+
+    private static final class Rule {
+        final String pattern;
+        final boolean allow;
+
+        Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+        }
+    }
+
+    private RobotsRules(List<Rule> rules, boolean unavailable) {
+        this.rules = rules;
+        this.unavailable = unavailable;
+    }
+
+    // robots.txt 不存在（4xx）时全部允许
+    static RobotsRules allowAll() {
+        return ALLOW_ALL;
+    }
+
+    // robots.txt 无法获取（5xx、网络错误）时全部禁止，缓存时间较短
+    static RobotsRules unavailable() {
+        return DISALLOW_ALL;
+    }
+
+    // agent 为产品名，如 Crawler/1.0 中的 Crawler，比较时不区分大小写
+    static RobotsRules parse(String text, String agent) {
+        String token = agent.toLowerCase(Locale.ROOT);
+        List<Rule> specific = new ArrayList<>();
+        List<Rule> wildcard = new ArrayList<>();
+        boolean matchesAgent = false;
+        boolean matchesWildcard = false;
+        boolean inAgentLines = false;
+        // 有针对本爬虫的分组时，即使分组中没有规则也不再使用 * 分组
+        boolean hasAgentGroup = false;
+
+        for (String line : text.split("\r\n|\r|\n")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            if (key.equals("user-agent")) {
+                // 规则之后的 User-agent 开始新的分组
+                if (!inAgentLines) {
+                    matchesAgent = false;
+                    matchesWildcard = false;
+                    inAgentLines = true;
+                }
+                String name = value.toLowerCase(Locale.ROOT);
+                if (name.equals("*")) {
+                    matchesWildcard = true;
+                } else if (name.equals(token) || name.startsWith(token + "/")) {
+                    matchesAgent = true;
+                    hasAgentGroup = true;
+                }
+            } else if (key.equals("allow") || key.equals("disallow")) {
+                inAgentLines = false;
+                // 空的 Disallow 表示不限制
+                if (value.isEmpty() || value.length() > MAX_PATTERN_LENGTH) continue;
+                Rule rule = new Rule(value, key.equals("allow"));
+                if (matchesAgent) specific.add(rule);
+                if (matchesWildcard) wildcard.add(rule);
+            } else {
+                // Sitemap、Crawl-delay 等不影响分组
+                inAgentLines = false;
+            }
+        }
+        return new RobotsRules(hasAgentGroup ? specific : wildcard, false);
+    }
+
+    boolean isUnavailable() {
+        return unavailable;
+    }
+
+    // path 为路径加查询串，如 /a/b?c=1
+    boolean isAllowed(String path) {
+        if (unavailable) return false;
+        // robots.txt 本身总是允许
+        if (path.equals("/robots.txt")) return true;
+
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (!matches(rule.pattern, path)) continue;
+            if (best == null || rule.pattern.length() > best.pattern.length()
+                    || rule.pattern.length() == best.pattern.length() && rule.allow) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow;
+    }
+
+    /**
+     * * 匹配任意字符序列，结尾的 $ 表示必须匹配到路径末尾，其余按前缀匹配（相当于结尾有一个 *）。
+     * 贪心匹配，失败时只回到最近的一个 * 多吞一个字符，最坏 O(规则长度 × 路径长度)，不会指数回溯。
+     */
+    static boolean matches(String pattern, String path) {
+        boolean anchored = pattern.endsWith("$");
+        int length = anchored ? pattern.length() - 1 : pattern.length();
+        int p = 0;
+        int s = 0;
+        // 最近一个 * 之后的规则位置，以及它当前吞到的路径位置
+        int star = -1;
+        int starMatch = 0;
+        while (s < path.length()) {
+            if (p < length && pattern.charAt(p) == '*') {
+                star = ++p;
+                starMatch = s;
+            } else if (p < length && pattern.charAt(p) == path.charAt(s)) {
+                p++;
+                s++;
+            } else if (p == length && !anchored) {
+                // 前缀已匹配
+                return true;
+            } else if (star >= 0) {
+                p = star;
+                s = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while (p < length && pattern.charAt(p) == '*') p++;
+        return p == length;
+    }
+}
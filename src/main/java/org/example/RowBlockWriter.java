@@ -0,0 +1,478 @@
+package org.example;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 超高工作表的行块并行写出。
+ * <p>
+ * XSSF 的行和单元格都是 XMLBeans 对象，同一个工作表不能并发修改，逐个创建、序列化这些对象又占了转换的大部分时间
+ * （读取 .xls 只占很小一部分）。这里仍在转换线程中按顺序读取源行，完成样式映射、共享字符串登记、公式结果、
+ * 检索索引和资源检查这些有顺序要求的工作，结果存入紧凑的行块；每满 {@link #BLOCK_ROWS} 行提交到线程池，
+ * 并行生成 {@code <row>} XML。写出 xlsx 时按行块顺序替换工作表部件中的 {@code <sheetData>}。
+ * <p>
+ * 生成的 XML 与逐个创建单元格时 XSSF 的输出等价（见 OutputVerifier），但不是逐字节相同：
+ * 共享字符串在这里去重后只登记一次，sst 的 count 属性因此等于 uniqueCount（该属性只是统计信息）；
+ * 公式文本结果中的控制字符写为 Excel 的 _xHHHH_，XSSF 则写成 ?。
+ */
+final class RowBlockWriter implements ParallelZipOutputStream.PartRewriter, Closeable {
+
+    // 每个行块的行数
+    static final int BLOCK_ROWS = 4096;
+    // 行数达到该值的工作表才按行块写出
+    static final int MIN_ROWS = 2 * BLOCK_ROWS;
+
+    // 单元格值类型
+    private static final byte BLANK = 0;
+    private static final byte NUMBER = 1;
+    private static final byte SHARED_STRING = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte ERROR = 4;
+    private static final byte STRING = 5;
+
+    // .xls 最多 256 列，列名预先算好
+    private static final String[] COLUMN_NAMES = new String[SpreadsheetVersion.EXCEL97.getMaxColumns()];
+
+    static {
+        for (int col = 0; col < COLUMN_NAMES.length; col++) {
+            COLUMN_NAMES[col] = CellReference.convertNumToColString(col);
+        }
+    }
+
+    private final int threads;
+    private final SharedStringsTable sharedStrings;
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    // 源样式下标 -> 输出样式下标 + 1，0 表示还未映射
+    private int[] styleIndexes = new int[64];
+    // 工作表部件名 -> 按顺序排列的行块 XML
+    private final Map<String, List<Future<byte[]>>> sheets = new HashMap<>();
+    private ExecutorService pool;
+
+    RowBlockWriter(XSSFWorkbook outputWorkbook, int threads) {
+        this.threads = threads;
+        this.sharedStrings = outputWorkbook.getSharedStringSource();
+    }
+
+    // 该工作表是否按行块写出
+    boolean accepts(Sheet inputSheet) {
+        return inputSheet.getPhysicalNumberOfRows() >= MIN_ROWS;
+    }
+
+    // 代替逐个创建行和单元格，行为与 ExcelConverter.copySheetContent 中的行循环相同
+    void copyRows(Sheet inputSheet, XSSFSheet outputSheet, SheetLayout layout,
+                  Map<CellStyle, CellStyle> styleCache, Function<CellStyle, CellStyle> styleMapper,
+                  FormulaHandler formulas, ConversionGuard guard, BlankCellCollapser blanks,
+                  SearchIndex.Document document, SalvageReport salvage) {
+        if (pool == null) {
+            pool = newExecutor(threads);
+        }
+        List<Future<byte[]>> blocks = new ArrayList<>();
+        Block block = new Block();
+        int firstRow = -1, lastRow = -1;
+        int firstColumn = Integer.MAX_VALUE, lastColumn = -1;
+        short defaultHeight = inputSheet.getDefaultRowHeight();
+
+        for (Row inputRow : inputSheet) {
+            if (inputRow == null) continue;
+
+            layout.observeRow(inputRow);
+            CellStyle rowStyle = blanks != null ? blanks.rowStyle(inputRow) : null;
+            boolean hidden = inputRow.getZeroHeight();
+            short height = inputRow.getHeight();
+            block.startRow(inputRow.getRowNum(), rowStyle != null ? styleIndex(rowStyle, styleMapper) : -1,
+                    hidden || height != defaultHeight ? height : -1, hidden);
+
+            for (Cell inputCell : inputRow) {
+                if (inputCell == null) continue;
+                // 与行、列默认样式相同的空白单元格不生成
+                if (blanks != null && blanks.isRedundant(inputCell, rowStyle)) continue;
+
+                try {
+                    addCell(block, inputCell, styleMapper, formulas);
+                } catch (RuntimeException e) {
+                    // 抢救模式下单个单元格出错只记录，不影响其它单元格
+                    if (salvage == null) throw e;
+                    salvage.lost("cell " + inputSheet.getSheetName() + "!"
+                            + new CellReference(inputCell).formatAsString(false) + ": " + e.getMessage());
+                    continue;
+                }
+                if (document != null) {
+                    document.add(inputCell);
+                }
+                firstColumn = Math.min(firstColumn, inputCell.getColumnIndex());
+                lastColumn = Math.max(lastColumn, inputCell.getColumnIndex());
+            }
+
+            if (firstRow < 0) firstRow = inputRow.getRowNum();
+            lastRow = inputRow.getRowNum();
+            if (block.rowCount == BLOCK_ROWS) {
+                blocks.add(pool.submit(block::render));
+                block = new Block();
+            }
+
+            // 检查取消、超时和资源限制
+            guard.row(inputRow.getPhysicalNumberOfCells(), styleCache.size());
+        }
+        if (block.rowCount > 0) {
+            blocks.add(pool.submit(block::render));
+        }
+
+        // 输出工作表中没有单元格，XSSF 算不出范围
+        if (lastColumn >= 0) {
+            outputSheet.setDimensionOverride(new CellRangeAddress(firstRow, lastRow, firstColumn, lastColumn));
+        }
+        sheets.put(outputSheet.getPackagePart().getPartName().getName().substring(1), blocks);
+    }
+
+    // 按 copyCell 和 FormulaHandler.copy 的规则记录单元格，出错时不写入行块
+    private void addCell(Block block, Cell inputCell, Function<CellStyle, CellStyle> styleMapper,
+                         FormulaHandler formulas) {
+        byte kind = BLANK;
+        double number = 0;
+        String text = null;
+        String formula = null;
+        switch (inputCell.getCellType()) {
+            case STRING:
+                kind = SHARED_STRING;
+                number = stringIndex(inputCell.getStringCellValue());
+                break;
+            case NUMERIC:
+                number = inputCell.getNumericCellValue();
+                kind = NUMBER;
+                break;
+            case BOOLEAN:
+                kind = BOOLEAN;
+                number = inputCell.getBooleanCellValue() ? 1 : 0;
+                break;
+            case FORMULA:
+                formula = inputCell.getCellFormula();
+                CellValue value = formulas.result(inputCell);
+                if (value == null) break;
+                switch (value.getCellType()) {
+                    case NUMERIC:
+                        kind = NUMBER;
+                        number = value.getNumberValue();
+                        break;
+                    case STRING:
+                        kind = STRING;
+                        text = checkLength(value.getStringValue());
+                        break;
+                    case BOOLEAN:
+                        kind = BOOLEAN;
+                        number = value.getBooleanValue() ? 1 : 0;
+                        break;
+                    case ERROR:
+                        kind = ERROR;
+                        text = FormulaError.forInt(value.getErrorValue()).getString();
+                        break;
+                    default:
+                        break;
+                }
+                break;
+            default:
+                // BLANK，以及 copyCell 不复制的 ERROR 单元格，只保留样式
+                break;
+        }
+        // 与 XSSFCell.setCellValue(double) 相同，无穷大和 NaN 写为错误值
+        if (kind == NUMBER && Double.isInfinite(number)) {
+            kind = ERROR;
+            text = FormulaError.DIV0.getString();
+        } else if (kind == NUMBER && Double.isNaN(number)) {
+            kind = ERROR;
+            text = FormulaError.NUM.getString();
+        }
+        block.addCell(inputCell.getColumnIndex(), styleIndex(inputCell.getCellStyle(), styleMapper),
+                kind, number, text, formula);
+    }
+
+    private int styleIndex(CellStyle sourceStyle, Function<CellStyle, CellStyle> styleMapper) {
+        int index = sourceStyle.getIndex() & 0xFFFF;
+        if (index >= styleIndexes.length) {
+            styleIndexes = Arrays.copyOf(styleIndexes, Math.max(index + 1, styleIndexes.length * 2));
+        }
+        if (styleIndexes[index] == 0) {
+            styleIndexes[index] = (styleMapper.apply(sourceStyle).getIndex() & 0xFFFF) + 1;
+        }
+        return styleIndexes[index] - 1;
+    }
+
+    private int stringIndex(String value) {
+        Integer index = stringIndexes.get(value);
+        if (index == null) {
+            index = sharedStrings.addSharedStringItem(new XSSFRichTextString(checkLength(value)));
+            stringIndexes.put(value, index);
+        }
+        return index;
+    }
+
+    // 与 XSSFCell.setCellValue(String) 相同的长度限制
+    private static String checkLength(String value) {
+        int max = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+        if (value.length() > max) {
+            throw new IllegalArgumentException("The maximum length of cell contents (text) is " + max
+                    + " characters");
+        }
+        return value;
+    }
+
+    @Override
+    public boolean rewrites(String name) {
+        return sheets.containsKey(name);
+    }
+
+    // 把工作表部件中的 sheetData 替换为按顺序排列的行块
+    @Override
+    public byte[] rewrite(String name, byte[] data) throws IOException {
+        List<Future<byte[]>> blocks = sheets.remove(name);
+        if (blocks == null) return data;
+
+        int start = indexOf(data, "<sheetData", 0);
+        if (start < 0) {
+            throw new IOException("No sheetData in " + name);
+        }
+        int end;
+        int close = indexOf(data, ">", start);
+        if (close > 0 && data[close - 1] == '/') {
+            end = close + 1;
+        } else {
+            int closing = indexOf(data, "</sheetData>", start);
+            if (closing < 0) {
+                throw new IOException("Unterminated sheetData in " + name);
+            }
+            end = closing + "</sheetData>".length();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + blocks.size() * BLOCK_ROWS * 64);
+        out.write(data, 0, start);
+        out.write("<sheetData>".getBytes(StandardCharsets.US_ASCII));
+        try {
+            for (int i = 0; i < blocks.size(); i++) {
+                out.write(blocks.get(i).get());
+                // 写入后释放
+                blocks.set(i, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering rows", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error rendering rows of " + name, e.getCause());
+        }
+        out.write("</sheetData>".getBytes(StandardCharsets.US_ASCII));
+        out.write(data, end, data.length - end);
+        return out.toByteArray();
+    }
+
+    private static int indexOf(byte[] data, String text, int from) {
+        byte[] pattern = text.getBytes(StandardCharsets.US_ASCII);
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "xls-rows-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // 一个行块：行属性和单元格分别存放在平行数组中，render 只读这些数组
+    private static class Block {
+        int rowCount;
+        int[] rowNumbers = new int[BLOCK_ROWS];
+        int[] rowStyles = new int[BLOCK_ROWS];
+        short[] rowHeights = new short[BLOCK_ROWS];
+        boolean[] rowHidden = new boolean[BLOCK_ROWS];
+        // 每行最后一个单元格之后的位置
+        int[] rowEnds = new int[BLOCK_ROWS];
+
+        int cellCount;
+        int[] columns = new int[BLOCK_ROWS];
+        int[] styles = new int[BLOCK_ROWS];
+        byte[] kinds = new byte[BLOCK_ROWS];
+        double[] numbers = new double[BLOCK_ROWS];
+        String[] texts = new String[BLOCK_ROWS];
+        String[] formulas = new String[BLOCK_ROWS];
+
+        // rowStyle、height 为 -1 表示没有
+        void startRow(int rowNumber, int rowStyle, short height, boolean hidden) {
+            rowNumbers[rowCount] = rowNumber;
+            rowStyles[rowCount] = rowStyle;
+            rowHeights[rowCount] = height;
+            rowHidden[rowCount] = hidden;
+            rowEnds[rowCount] = cellCount;
+            rowCount++;
+        }
+
+        void addCell(int column, int style, byte kind, double number, String text, String formula) {
+            if (cellCount == columns.length) {
+                int newLength = cellCount * 2;
+                columns = Arrays.copyOf(columns, newLength);
+                styles = Arrays.copyOf(styles, newLength);
+                kinds = Arrays.copyOf(kinds, newLength);
+                numbers = Arrays.copyOf(numbers, newLength);
+                texts = Arrays.copyOf(texts, newLength);
+                formulas = Arrays.copyOf(formulas, newLength);
+            }
+            columns[cellCount] = column;
+            styles[cellCount] = style;
+            kinds[cellCount] = kind;
+            numbers[cellCount] = number;
+            texts[cellCount] = text;
+            formulas[cellCount] = formula;
+            cellCount++;
+            rowEnds[rowCount - 1] = cellCount;
+        }
+
+        // 与 XSSF 序列化的格式相同（控制字符的写法除外，见类注释）
+        byte[] render() {
+            StringBuilder xml = new StringBuilder(cellCount * 48 + rowCount * 16);
+            int cell = 0;
+            for (int r = 0; r < rowCount; r++) {
+                String rowName = Integer.toString(rowNumbers[r] + 1);
+                xml.append("<row r=\"").append(rowName).append('"');
+                if (rowStyles[r] >= 0) {
+                    xml.append(" s=\"").append(rowStyles[r]).append("\" customFormat=\"true\"");
+                }
+                if (rowHeights[r] >= 0) {
+                    xml.append(" ht=\"").append(rowHeights[r] / 20.0).append('"');
+                }
+                if (rowHeights[r] >= 0) {
+                    xml.append(" customHeight=\"true\"");
+                }
+                if (rowHidden[r]) {
+                    xml.append(" hidden=\"true\"");
+                }
+                if (cell == rowEnds[r]) {
+                    xml.append("/>");
+                    continue;
+                }
+                xml.append('>');
+                for (; cell < rowEnds[r]; cell++) {
+                    appendCell(xml, cell, rowName);
+                }
+                xml.append("</row>");
+            }
+            return xml.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        private void appendCell(StringBuilder xml, int cell, String rowName) {
+            xml.append("<c r=\"").append(COLUMN_NAMES[columns[cell]]).append(rowName).append('"');
+            switch (kinds[cell]) {
+                case NUMBER:
+                    xml.append(" t=\"n\"");
+                    break;
+                case SHARED_STRING:
+                    xml.append(" t=\"s\"");
+                    break;
+                case BOOLEAN:
+                    xml.append(" t=\"b\"");
+                    break;
+                case ERROR:
+                    xml.append(" t=\"e\"");
+                    break;
+                case STRING:
+                    xml.append(" t=\"str\"");
+                    break;
+                default:
+                    break;
+            }
+            xml.append(" s=\"").append(styles[cell]).append('"');
+            if (kinds[cell] == BLANK && formulas[cell] == null) {
+                xml.append("/>");
+                return;
+            }
+            xml.append('>');
+            if (formulas[cell] != null) {
+                xml.append("<f>");
+                appendEscaped(xml, formulas[cell]);
+                xml.append("</f>");
+            }
+            switch (kinds[cell]) {
+                case NUMBER:
+                    xml.append("<v>").append(numbers[cell]).append("</v>");
+                    break;
+                case SHARED_STRING:
+                    xml.append("<v>").append((int) numbers[cell]).append("</v>");
+                    break;
+                case BOOLEAN:
+                    xml.append("<v>").append(numbers[cell] != 0 ? '1' : '0').append("</v>");
+                    break;
+                case ERROR:
+                case STRING:
+                    xml.append("<v>");
+                    appendEscaped(xml, texts[cell]);
+                    xml.append("</v>");
+                    break;
+                default:
+                    break;
+            }
+            xml.append("</c>");
+        }
+
+        // XML 1.0 不允许的控制字符按 Excel 的方式写为 _xHHHH_
+        private static void appendEscaped(StringBuilder xml, String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '&':
+                        xml.append("&amp;");
+                        break;
+                    case '<':
+                        xml.append("&lt;");
+                        break;
+                    case '>':
+                        xml.append("&gt;");
+                        break;
+                    case '\r':
+                        // 读取时换行会被规范化，回车需要写为字符引用
+                        xml.append("&#13;");
+                        break;
+                    case '\t':
+                    case '\n':
+                        xml.append(c);
+                        break;
+                    default:
+                        if (c < 0x20 || c == 0xFFFE || c == 0xFFFF) {
+                            xml.append(String.format("_x%04X_", (int) c));
+                        } else {
+                            xml.append(c);
+                        }
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.example;
+
+import org.apache.poi.EncryptedDocumentException;
+import org.apache.poi.hssf.record.*;
+import org.apache.poi.hssf.record.crypto.Biff8EncryptionKey;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.crypt.Decryptor;
+import org.apache.poi.poifs.crypt.EncryptionInfo;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.util.RecordFormatException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.*;
+
+/**
+ * 抢救读取损坏的 .xls。
+ * <p>
+ * 正常解析时任何一条记录出错都会导致整个文件失败；这里逐条读取 Workbook 流中的 BIFF 记录，
+ * 只解析需要的记录（工作表名、共享字符串表、单元格值、合并区域、列宽），
+ * 解析失败的记录跳过并记入报告，流无法继续读取时保留已读到的内容。
+ * 恢复的内容放进一个新的 HSSFWorkbook，之后走正常的转换流程；样式、图片、公式（保留缓存的结果）不恢复。
+ * 加密文件按给定密码（没有时用 Excel 的默认密码）解密后读取。
+ */
+final class SalvageReader {
+
+    // 需要解析的记录，其它记录直接跳过，不受其内容损坏的影响
+    private static final Set<Integer> PARSED = new HashSet<>(Arrays.asList(
+            (int) BoundSheetRecord.sid, (int) SSTRecord.sid, (int) NumberRecord.sid, (int) RKRecord.sid,
+            (int) MulRKRecord.sid, (int) LabelSSTRecord.sid, (int) LabelRecord.sid, (int) BoolErrRecord.sid,
+            (int) FormulaRecord.sid, (int) StringRecord.sid, (int) MergeCellsRecord.sid,
+            (int) ColumnInfoRecord.sid));
+
+    private SalvageReader() {
+    }
+
+    static Workbook read(File file, String password, SalvageReport report) throws IOException {
+        report.startRecordLevel();
+        try (POIFSFileSystem fs = XlsInput.openFileSystem(file)) {
+            DirectoryNode root = fs.getRoot();
+            String streamName = root.hasEntry("Workbook") ? "Workbook"
+                    : root.hasEntry("WORKBOOK") ? "WORKBOOK" : root.hasEntry("Book") ? "Book" : null;
+            if (streamName == null) {
+                throw new IOException("No Workbook stream found in " + file);
+            }
+
+            try (InputStream in = root.createDocumentInputStream(streamName)) {
+                return new Builder(report).read(in, password);
+            }
+        }
+    }
+
+    // 逐条读取记录并组装工作簿
+    private static class Builder {
+        private final SalvageReport report;
+        private final HSSFWorkbook workbook = new HSSFWorkbook();
+
+        private final List<BoundSheetRecord> boundSheets = new ArrayList<>();
+        private SSTRecord sst;
+        private Sheet sheet;
+        private int depth;
+        private int substreams;
+        private boolean inWorksheet;
+        // 结果为字符串的公式，字符串在随后的 STRING 记录中
+        private Cell pendingStringCell;
+
+        Builder(SalvageReport report) {
+            this.report = report;
+        }
+
+        Workbook read(InputStream in, String password) throws IOException {
+            RecordInputStream rs = openRecordStream(in, password);
+            try {
+                while (rs.hasNextRecord()) {
+                    // 与 POI 相同：最后一个子流结束后如果不是新的 BOF，其后的内容（填充等）不再读取
+                    if (depth == 0 && substreams > 0 && rs.getNextSid() != BOFRecord.sid) break;
+                    rs.nextRecord();
+                    int sid = rs.getSid();
+                    report.recordRead();
+                    if (!PARSED.contains(sid) && sid != BOFRecord.sid && sid != EOFRecord.sid) {
+                        rs.readRemainder();
+                        continue;
+                    }
+
+                    try {
+                        handle(sid, rs);
+                    } catch (RuntimeException e) {
+                        report.recordDamaged(sid, report.getRecordsRead(), e);
+                    }
+                    // 解析失败或没有读完的记录丢弃剩余内容，保持与下一条记录对齐
+                    if (rs.remaining() > 0) {
+                        rs.readRemainder();
+                    }
+                }
+            } catch (RuntimeException e) {
+                // 记录头损坏或流被截断，无法再定位下一条记录
+                report.truncated(e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+            return workbook;
+        }
+
+        // 与 POI 的 RecordFactoryInputStream 相同：BOF 之后（可能隔一条 WRITEPROTECT）是 FILEPASS 时解密后续记录
+        private RecordInputStream openRecordStream(InputStream in, String password) throws IOException {
+            RecordInputStream rs = new RecordInputStream(in);
+            rs.nextRecord();
+            int initialSize = 4 + rs.remaining();
+            org.apache.poi.hssf.record.Record record = RecordFactory.createSingleRecord(rs);
+            report.recordRead();
+            handleBof(record);
+
+            FilePassRecord filePass = null;
+            if (record instanceof BOFRecord && rs.hasNextRecord()) {
+                rs.nextRecord();
+                record = RecordFactory.createSingleRecord(rs);
+                report.recordRead();
+                initialSize += record.getRecordSize();
+                if (record instanceof WriteProtectRecord && rs.hasNextRecord()) {
+                    rs.nextRecord();
+                    record = RecordFactory.createSingleRecord(rs);
+                    report.recordRead();
+                    initialSize += record.getRecordSize();
+                }
+                if (record instanceof FilePassRecord) {
+                    filePass = (FilePassRecord) record;
+                }
+            }
+            if (filePass == null) {
+                if (PARSED.contains((int) record.getSid())) {
+                    handleRecord(record);
+                }
+                return rs;
+            }
+
+            String userPassword = password != null ? password
+                    : Biff8EncryptionKey.getCurrentUserPassword() != null
+                    ? Biff8EncryptionKey.getCurrentUserPassword() : Decryptor.DEFAULT_PASSWORD;
+            EncryptionInfo info = filePass.getEncryptionInfo();
+            try {
+                if (!info.getDecryptor().verifyPassword(userPassword)) {
+                    throw new EncryptedDocumentException(password == null
+                            ? "Workbook is password protected, a password is required"
+                            : "Password is incorrect");
+                }
+            } catch (GeneralSecurityException e) {
+                throw new EncryptedDocumentException(e);
+            }
+            return new RecordInputStream(in, info, initialSize);
+        }
+
+        private void handle(int sid, RecordInputStream rs) {
+            if (sid == BOFRecord.sid) {
+                handleBof(RecordFactory.createSingleRecord(rs));
+            } else if (sid == EOFRecord.sid) {
+                depth = Math.max(0, depth - 1);
+                if (depth == 0) {
+                    inWorksheet = false;
+                    sheet = null;
+                }
+            } else {
+                handleRecord(RecordFactory.createSingleRecord(rs));
+            }
+        }
+
+        private void handleBof(org.apache.poi.hssf.record.Record record) {
+            if (!(record instanceof BOFRecord)) {
+                throw new RecordFormatException("Stream does not start with a BOF record");
+            }
+            BOFRecord bof = (BOFRecord) record;
+            depth++;
+            // 工作簿全局区之后每个顶层 BOF 对应一个工作表（或图表等其它子流）
+            if (depth == 1 && bof.getType() != BOFRecord.TYPE_WORKBOOK) {
+                int ordinal = substreams++;
+                if (bof.getType() == BOFRecord.TYPE_WORKSHEET) {
+                    sheet = workbook.createSheet(sheetName(ordinal));
+                    inWorksheet = true;
+                    report.sheetRecovered();
+                } else {
+                    report.lost("non-worksheet substream #" + (ordinal + 1) + " (type 0x"
+                            + Integer.toHexString(bof.getType()) + ") skipped");
+                }
+            }
+        }
+
+        private void handleRecord(org.apache.poi.hssf.record.Record record) {
+            if (record instanceof BoundSheetRecord) {
+                boundSheets.add((BoundSheetRecord) record);
+                return;
+            }
+            if (record instanceof SSTRecord) {
+                sst = (SSTRecord) record;
+                return;
+            }
+
+            // 以下记录只在工作表子流中处理（嵌入图表的子流嵌套在工作表内，depth > 1）
+            if (!inWorksheet || depth != 1) return;
+
+            if (record instanceof StringRecord) {
+                if (pendingStringCell != null) {
+                    pendingStringCell.setCellValue(((StringRecord) record).getString());
+                    pendingStringCell = null;
+                }
+                return;
+            }
+            pendingStringCell = null;
+
+            if (record instanceof MergeCellsRecord) {
+                MergeCellsRecord merges = (MergeCellsRecord) record;
+                for (int i = 0; i < merges.getNumAreas(); i++) {
+                    CellRangeAddress area = merges.getAreaAt(i);
+                    try {
+                        sheet.addMergedRegionUnsafe(area);
+                    } catch (RuntimeException e) {
+                        report.lost("merged region " + area.formatAsString() + ": " + e.getMessage());
+                    }
+                }
+            } else if (record instanceof ColumnInfoRecord) {
+                ColumnInfoRecord info = (ColumnInfoRecord) record;
+                int last = Math.min(info.getLastColumn(), SpreadsheetVersion.EXCEL97.getLastColumnIndex());
+                for (int col = info.getFirstColumn(); col <= last; col++) {
+                    sheet.setColumnWidth(col, Math.min(info.getColumnWidth(), 255 * 256));
+                    sheet.setColumnHidden(col, info.getHidden());
+                }
+            } else if (record instanceof MulRKRecord) {
+                MulRKRecord mulRk = (MulRKRecord) record;
+                for (int i = 0; i < mulRk.getNumColumns(); i++) {
+                    cell(mulRk.getRow(), mulRk.getFirstColumn() + i).setCellValue(mulRk.getRKNumberAt(i));
+                }
+            } else if (record instanceof CellValueRecordInterface) {
+                handleCellValue((CellValueRecordInterface) record);
+            }
+        }
+
+        private void handleCellValue(CellValueRecordInterface value) {
+            Cell cell = cell(value.getRow(), value.getColumn());
+            if (value instanceof NumberRecord) {
+                cell.setCellValue(((NumberRecord) value).getValue());
+            } else if (value instanceof RKRecord) {
+                cell.setCellValue(((RKRecord) value).getRKNumber());
+            } else if (value instanceof LabelRecord) {
+                cell.setCellValue(((LabelRecord) value).getValue());
+            } else if (value instanceof LabelSSTRecord) {
+                int index = ((LabelSSTRecord) value).getSSTIndex();
+                if (sst != null && index >= 0 && index < sst.getNumUniqueStrings()) {
+                    cell.setCellValue(sst.getString(index).getString());
+                } else {
+                    report.stringLost();
+                }
+            } else if (value instanceof BoolErrRecord) {
+                BoolErrRecord boolErr = (BoolErrRecord) value;
+                if (boolErr.isBoolean()) {
+                    cell.setCellValue(boolErr.getBooleanValue());
+                } else {
+                    cell.setCellErrorValue(boolErr.getErrorValue());
+                }
+            } else if (value instanceof FormulaRecord) {
+                // 公式表达式需要完整的工作簿上下文才能还原，只保留缓存的结果
+                FormulaRecord formula = (FormulaRecord) value;
+                report.formulaAsValue();
+                switch (formula.getCachedResultTypeEnum()) {
+                    case NUMERIC:
+                        cell.setCellValue(formula.getValue());
+                        break;
+                    case STRING:
+                        pendingStringCell = cell;
+                        break;
+                    case BOOLEAN:
+                        cell.setCellValue(formula.getCachedBooleanValue());
+                        break;
+                    case ERROR:
+                        cell.setCellErrorValue((byte) formula.getCachedErrorValue());
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private Cell cell(int rowIndex, int columnIndex) {
+            if (rowIndex < 0 || rowIndex > SpreadsheetVersion.EXCEL97.getLastRowIndex()
+                    || columnIndex < 0 || columnIndex > SpreadsheetVersion.EXCEL97.getLastColumnIndex()) {
+                throw new RecordFormatException("Cell out of range: row " + rowIndex + ", column " + columnIndex);
+            }
+            Row row = sheet.getRow(rowIndex);
+            if (row == null) {
+                row = sheet.createRow(rowIndex);
+            }
+            Cell cell = row.getCell(columnIndex);
+            if (cell == null) {
+                cell = row.createCell(columnIndex);
+                report.cellRecovered();
+            }
+            return cell;
+        }
+
+        // 按 BOF 位置排序的工作表名，损坏或重复时生成替代名称
+        private String sheetName(int ordinal) {
+            BoundSheetRecord[] ordered = BoundSheetRecord.orderByBofPosition(boundSheets);
+            String name = ordinal < ordered.length ? ordered[ordinal].getSheetname() : null;
+            name = name == null || name.trim().isEmpty() ? "Sheet" + (ordinal + 1) : WorkbookUtil.createSafeSheetName(name);
+            String unique = name;
+            for (int i = 2; workbook.getSheetIndex(unique) >= 0; i++) {
+                String suffix = " (" + i + ")";
+                unique = name.substring(0, Math.min(name.length(), 31 - suffix.length())) + suffix;
+            }
+            return unique;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 抢救模式的结果报告：恢复了什么、丢失了什么。
+ * <p>
+ * 文件能正常打开时只记录单元格、图片级别的错误；
+ * 无法打开时改为逐条读取 BIFF 记录（{@link SalvageReader}），此时还会记录损坏、跳过的记录和未能恢复的内容。
+ */
+public class SalvageReport {
+
+    // 最多保留的丢失明细条数，超出部分只计数
+    private static final int MAX_DETAILS = 200;
+
+    private String openError;
+    private boolean recordLevel;
+    private boolean truncated;
+    private int recordsRead;
+    private int recordsDamaged;
+    private int sheetsRecovered;
+    private long cellsRecovered;
+    private int formulasAsValues;
+    private int stringsLost;
+    private int otherLosses;
+    private int suppressedDetails;
+    private final List<String> details = new ArrayList<>();
+
+    void openFailed(Exception e) {
+        this.openError = e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    void startRecordLevel() {
+        this.recordLevel = true;
+    }
+
+    void recordRead() {
+        recordsRead++;
+    }
+
+    void recordDamaged(int sid, long offset, Exception e) {
+        recordsDamaged++;
+        detail(String.format("damaged record 0x%04X at record #%d: %s", sid, offset, e.getMessage()));
+    }
+
+    void truncated(String reason) {
+        truncated = true;
+        detail("stream unreadable after record #" + recordsRead + ": " + reason);
+    }
+
+    void sheetRecovered() {
+        sheetsRecovered++;
+    }
+
+    void cellRecovered() {
+        cellsRecovered++;
+    }
+
+    void formulaAsValue() {
+        formulasAsValues++;
+    }
+
+    void stringLost() {
+        stringsLost++;
+    }
+
+    // 其它丢失（单元格、图片、合并区域等）
+    void lost(String what) {
+        otherLosses++;
+        detail(what);
+    }
+
+    private void detail(String message) {
+        if (details.size() < MAX_DETAILS) {
+            details.add(message);
+        } else {
+            suppressedDetails++;
+        }
+    }
+
+    // 是否有内容丢失
+    public boolean hasLosses() {
+        return truncated || recordsDamaged > 0 || stringsLost > 0 || otherLosses > 0 || (recordLevel && formulasAsValues > 0);
+    }
+
+    // 是否因为无法正常打开而退回到逐条读取记录
+    public boolean isRecordLevel() {
+        return recordLevel;
+    }
+
+    public String getOpenError() {
+        return openError;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public int getRecordsRead() {
+        return recordsRead;
+    }
+
+    public int getRecordsDamaged() {
+        return recordsDamaged;
+    }
+
+    public int getSheetsRecovered() {
+        return sheetsRecovered;
+    }
+
+    public long getCellsRecovered() {
+        return cellsRecovered;
+    }
+
+    public int getFormulasAsValues() {
+        return formulasAsValues;
+    }
+
+    public int getStringsLost() {
+        return stringsLost;
+    }
+
+    public List<String> getDetails() {
+        return Collections.unmodifiableList(details);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        if (!recordLevel) {
+            report.append("opened normally");
+        } else {
+            report.append("record-level salvage (").append(openError).append(")")
+                    .append(", records read ").append(recordsRead)
+                    .append(", damaged ").append(recordsDamaged)
+                    .append(truncated ? ", stream truncated" : "")
+                    .append(", sheets ").append(sheetsRecovered)
+                    .append(", cells ").append(cellsRecovered)
+                    .append(", formulas kept as values ").append(formulasAsValues)
+                    .append(", strings lost ").append(stringsLost)
+                    .append("; styles, pictures and formulas are not recovered");
+        }
+        if (otherLosses > 0) {
+            report.append(", other losses ").append(otherLosses);
+        }
+        for (String detail : details) {
+            report.append(System.lineSeparator()).append("  ").append(detail);
+        }
+        if (suppressedDetails > 0) {
+            report.append(System.lineSeparator()).append("  ... ").append(suppressedDetails).append(" more");
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,640 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * 工作簿全文、数值检索索引。
+ * <p>
+ * 索引目录中每个工作簿对应一个段文件（按词排序的倒排表：词 -> 工作表、行、列），
+ * 转换或预览时逐个单元格收集，整个文件处理完后原子替换该文件的段，
+ * 因此索引随转换增量更新，不需要重建。打开索引时把所有段合并到内存中的词表，
+ * 查询只查内存词表，不需要再打开任何工作簿。
+ * <p>
+ * 分词规则：英文、数字按连续字母、数字切分并转小写；数字（包括小数）统一规范化，
+ * 单元格中的 12.50 和文本中的 "12.5" 得到同一个词；数字前单独的负号保留，-12.5 和 12.5 是不同的词
+ * （2024-01-05、A-12 中的连字符不是负号）；中文、日文、韩文按相邻两个字切分。
+ * 多个词的查询要求同一个单元格包含所有词。
+ */
+public class SearchIndex {
+
+    private static final int MAGIC = 0x58494458; // "XIDX"
+    // 2：字符串改为 int 长度前缀 + UTF-8，不再受 writeUTF 的 65535 字节限制
+    private static final int VERSION = 2;
+    static final String SEGMENT_SUFFIX = ".seg";
+    // 单元格文本最多 32767 个字符；段文件损坏时不按错误的长度分配数组
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    // 失效文档超过此数量且多于有效文档时压缩内存词表
+    static final int COMPACT_THRESHOLD = 16;
+
+    private final File directory;
+
+    private boolean loaded;
+    private final Map<String, Doc> documents = new HashMap<>();
+    private final List<Doc> docsById = new ArrayList<>();
+    // 词 -> 命中位置，每 4 个 int 为一条：文档号、工作表、行、列
+    private final Map<String, IntList> postings = new HashMap<>();
+    private int deadDocs;
+
+    // 已入索引的文件
+    private static class Doc {
+        // 压缩时重新编号
+        int id;
+        final String path;
+        final long lastModified;
+        final long length;
+        final String[] sheets;
+        boolean live = true;
+
+        Doc(int id, String path, long lastModified, long length, String[] sheets) {
+            this.id = id;
+            this.path = path;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.sheets = sheets;
+        }
+    }
+
+    /**
+     * 检索结果：文件、工作表和单元格位置
+     */
+    public static class Hit {
+        private final String file;
+        private final String sheetName;
+        private final int row;
+        private final int column;
+
+        Hit(String file, String sheetName, int row, int column) {
+            this.file = file;
+            this.sheetName = sheetName;
+            this.row = row;
+            this.column = column;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public String getSheetName() {
+            return sheetName;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        @Override
+        public String toString() {
+            return file + " [" + sheetName + "!" + new CellReference(row, column).formatAsString() + "]";
+        }
+    }
+
+    /**
+     * 一个文件的索引内容，逐个单元格收集，{@link #commit()} 后替换该文件原有的索引。
+     * 只在一个线程中使用。
+     */
+    class Document {
+        private final File file;
+        private final List<String> sheets = new ArrayList<>();
+        // 词 -> 命中位置，每 3 个 int 为一条：工作表、行、列
+        private final Map<String, IntList> terms = new HashMap<>();
+        private final Set<String> cellTokens = new HashSet<>();
+        private SimpleDateFormat dateFormat;
+
+        Document(File file) {
+            this.file = file;
+        }
+
+        void startSheet(String sheetName) {
+            sheets.add(sheetName);
+        }
+
+        // 收集当前工作表中一个单元格的内容，公式取缓存的结果
+        void add(Cell cell) {
+            if (sheets.isEmpty()) {
+                throw new IllegalStateException("No current sheet");
+            }
+            CellType type = cell.getCellType();
+            if (type == CellType.FORMULA) {
+                type = cell.getCachedFormulaResultType();
+            }
+
+            cellTokens.clear();
+            switch (type) {
+                case STRING:
+                    tokenize(cell.getRichStringCellValue().getString(), cellTokens);
+                    break;
+                case NUMERIC:
+                    tokenize(normalizeNumber(cell.getNumericCellValue()), cellTokens);
+                    if (DateUtil.isCellDateFormatted(cell)) {
+                        if (dateFormat == null) dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+                        tokenize(dateFormat.format(cell.getDateCellValue()), cellTokens);
+                    }
+                    break;
+                default:
+                    return;
+            }
+
+            int sheet = sheets.size() - 1;
+            for (String token : cellTokens) {
+                IntList list = terms.computeIfAbsent(token, t -> new IntList());
+                list.add(sheet);
+                list.add(cell.getRowIndex());
+                list.add(cell.getColumnIndex());
+            }
+        }
+
+        // 写入段文件并替换内存中该文件原有的索引
+        void commit() throws IOException {
+            SearchIndex.this.commit(this);
+        }
+    }
+
+    public SearchIndex(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    Document newDocument(File file) {
+        return new Document(file.getAbsoluteFile());
+    }
+
+    // 文件自上次索引后是否未变化
+    public synchronized boolean isCurrent(File file) throws IOException {
+        ensureLoaded();
+        Doc doc = documents.get(file.getAbsolutePath());
+        return doc != null && doc.lastModified == file.lastModified() && doc.length == file.length();
+    }
+
+    /**
+     * 读取工作簿（.xls 或 .xlsx）并加入索引，用于已有文件的补充索引
+     */
+    public void index(File file) throws IOException {
+        try (Workbook workbook = XlsInput.openWorkbook(file)) {
+            index(file, workbook);
+        }
+    }
+
+    void index(File file, Workbook workbook) throws IOException {
+        Document document = newDocument(file);
+        for (Sheet sheet : workbook) {
+            document.startSheet(sheet.getSheetName());
+            for (Row row : sheet) {
+                for (Cell cell : row) {
+                    document.add(cell);
+                }
+            }
+        }
+        document.commit();
+    }
+
+    public synchronized void remove(File file) throws IOException {
+        ensureLoaded();
+        String path = file.getAbsolutePath();
+        Doc doc = documents.remove(path);
+        if (doc != null) {
+            markDead(doc);
+            Files.deleteIfExists(segmentFile(path).toPath());
+            compactIfNeeded();
+        }
+    }
+
+    public List<Hit> search(String query) throws IOException {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 查询同时包含所有查询词的单元格，最多返回 limit 条
+     */
+    public synchronized List<Hit> search(String query, int limit) throws IOException {
+        ensureLoaded();
+        Set<String> tokens = new LinkedHashSet<>();
+        tokenize(query, tokens);
+        List<Hit> hits = new ArrayList<>();
+        if (tokens.isEmpty()) return hits;
+
+        List<IntList> lists = new ArrayList<>();
+        for (String token : tokens) {
+            IntList list = postings.get(token);
+            if (list == null) return hits;
+            lists.add(list);
+        }
+        // 从最短的倒排表出发，其余的词只做存在性检查
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        List<Set<CellKey>> others = new ArrayList<>();
+        for (int i = 1; i < lists.size(); i++) {
+            Set<CellKey> keys = new HashSet<>();
+            IntList list = lists.get(i);
+            for (int p = 0; p < list.size; p += 4) {
+                keys.add(new CellKey(list.data[p], list.data[p + 1], list.data[p + 2], list.data[p + 3]));
+            }
+            others.add(keys);
+        }
+
+        IntList first = lists.get(0);
+        for (int p = 0; p < first.size && hits.size() < limit; p += 4) {
+            Doc doc = docsById.get(first.data[p]);
+            if (!doc.live) continue;
+
+            if (!others.isEmpty()) {
+                CellKey key = new CellKey(first.data[p], first.data[p + 1], first.data[p + 2], first.data[p + 3]);
+                boolean all = true;
+                for (Set<CellKey> keys : others) {
+                    if (!keys.contains(key)) {
+                        all = false;
+                        break;
+                    }
+                }
+                if (!all) continue;
+            }
+            hits.add(new Hit(doc.path, doc.sheets[first.data[p + 1]], first.data[p + 2], first.data[p + 3]));
+        }
+        return hits;
+    }
+
+    private synchronized void commit(Document document) throws IOException {
+        ensureLoaded();
+        String path = document.file.getPath();
+        Doc doc = new Doc(docsById.size(), path, document.file.lastModified(), document.file.length(),
+                document.sheets.toArray(new String[0]));
+
+        writeSegment(doc, document.terms);
+
+        Doc previous = documents.put(path, doc);
+        if (previous != null) {
+            markDead(previous);
+        }
+        docsById.add(doc);
+        for (Map.Entry<String, IntList> entry : document.terms.entrySet()) {
+            addPostings(doc.id, entry.getKey(), entry.getValue());
+        }
+        compactIfNeeded();
+    }
+
+    private void writeSegment(Doc doc, Map<String, IntList> terms) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create index directory: " + directory);
+        }
+        File segment = segmentFile(doc.path);
+        File temp = File.createTempFile("segment", ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, doc.path);
+                out.writeLong(doc.lastModified);
+                out.writeLong(doc.length);
+                out.writeInt(doc.sheets.length);
+                for (String sheet : doc.sheets) {
+                    writeString(out, sheet);
+                }
+
+                List<String> sorted = new ArrayList<>(terms.keySet());
+                Collections.sort(sorted);
+                out.writeInt(sorted.size());
+                for (String token : sorted) {
+                    IntList list = terms.get(token);
+                    writeString(out, token);
+                    out.writeInt(list.size / 3);
+                    for (int p = 0; p < list.size; p += 3) {
+                        out.writeShort(list.data[p]);
+                        out.writeInt(list.data[p + 1]);
+                        out.writeShort(list.data[p + 2]);
+                    }
+                }
+            }
+            Files.move(temp.toPath(), segment.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (loaded) return;
+        loaded = true;
+
+        File[] segments = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (segments == null) return;
+        for (File segment : segments) {
+            try {
+                loadSegment(segment);
+            } catch (IOException e) {
+                System.err.println("Skipping unreadable index segment " + segment + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void loadSegment(File segment) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an index segment");
+            }
+            String path = readString(in);
+            long lastModified = in.readLong();
+            long length = in.readLong();
+            String[] sheets = new String[in.readInt()];
+            for (int i = 0; i < sheets.length; i++) {
+                sheets[i] = readString(in);
+            }
+
+            Doc doc = new Doc(docsById.size(), path, lastModified, length, sheets);
+            int tokenCount = in.readInt();
+            Map<String, IntList> terms = new HashMap<>();
+            for (int t = 0; t < tokenCount; t++) {
+                String token = readString(in);
+                int count = in.readInt();
+                IntList list = new IntList();
+                for (int i = 0; i < count; i++) {
+                    list.add(in.readUnsignedShort());
+                    list.add(in.readInt());
+                    list.add(in.readUnsignedShort());
+                }
+                terms.put(token, list);
+            }
+
+            // 整个段读完后再加入，损坏的段不会留下一半的内容
+            docsById.add(doc);
+            documents.put(path, doc);
+            for (Map.Entry<String, IntList> entry : terms.entrySet()) {
+                addPostings(doc.id, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Corrupt index segment: string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void addPostings(int docId, String token, IntList cells) {
+        IntList list = postings.computeIfAbsent(token, t -> new IntList());
+        for (int p = 0; p < cells.size; p += 3) {
+            list.add(docId);
+            list.add(cells.data[p]);
+            list.add(cells.data[p + 1]);
+            list.add(cells.data[p + 2]);
+        }
+    }
+
+    private void markDead(Doc doc) {
+        if (doc.live) {
+            doc.live = false;
+            deadDocs++;
+        }
+    }
+
+    // 去掉失效文档及其命中位置，有效文档按原顺序重新编号，内存只与有效文档的数量有关
+    private void compactIfNeeded() {
+        if (deadDocs < COMPACT_THRESHOLD || deadDocs < documents.size()) return;
+
+        int[] newIds = new int[docsById.size()];
+        List<Doc> live = new ArrayList<>(documents.size());
+        for (Doc doc : docsById) {
+            if (doc.live) {
+                newIds[doc.id] = live.size();
+                doc.id = live.size();
+                live.add(doc);
+            } else {
+                newIds[doc.id] = -1;
+            }
+        }
+
+        Iterator<Map.Entry<String, IntList>> iterator = postings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            IntList list = iterator.next().getValue();
+            int kept = 0;
+            for (int p = 0; p < list.size; p += 4) {
+                int id = newIds[list.data[p]];
+                if (id >= 0) {
+                    System.arraycopy(list.data, p, list.data, kept, 4);
+                    list.data[kept] = id;
+                    kept += 4;
+                }
+            }
+            list.size = kept;
+            if (kept == 0) iterator.remove();
+        }
+        docsById.clear();
+        docsById.addAll(live);
+        deadDocs = 0;
+    }
+
+    // 内存词表中的命中位置数（测试用）
+    synchronized int postingCount() {
+        int count = 0;
+        for (IntList list : postings.values()) {
+            count += list.size / 4;
+        }
+        return count;
+    }
+
+    private File segmentFile(String path) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(path.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                name.append(String.format("%02x", hash[i]));
+            }
+            return new File(directory, name + SEGMENT_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 分词，结果加入 tokens
+    static void tokenize(String text, Collection<String> tokens) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int cp = text.codePointAt(i);
+            if (isCjk(cp)) {
+                int start = i;
+                while (i < length && isCjk(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                addCjkBigrams(text.substring(start, i), tokens);
+            } else if (Character.isDigit(cp) || isMinusSign(text, i)) {
+                int start = i;
+                if (cp == '-') i++;
+                int digits = i;
+                while (i < length) {
+                    char c = text.charAt(i);
+                    if (Character.isDigit(c)
+                            || (c == '.' && i + 1 < length && Character.isDigit(text.charAt(i + 1)))) {
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                // 数字后紧跟字母时（如 10kg、x10）按普通词处理
+                if (i < length && Character.isLetter(text.codePointAt(i)) && !isCjk(text.codePointAt(i))) {
+                    i = scanWord(text, digits, tokens);
+                } else {
+                    tokens.add(normalizeNumber(text.substring(start, i)));
+                }
+            } else if (Character.isLetter(cp)) {
+                i = scanWord(text, i, tokens);
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+    }
+
+    // 数字前单独的负号；前面紧跟字母或数字时是连字符（2024-01-05、A-12）
+    private static boolean isMinusSign(String text, int i) {
+        return text.charAt(i) == '-'
+                && i + 1 < text.length() && Character.isDigit(text.charAt(i + 1))
+                && (i == 0 || !Character.isLetterOrDigit(text.codePointBefore(i)));
+    }
+
+    private static int scanWord(String text, int start, Collection<String> tokens) {
+        int i = start;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(cp) || isCjk(cp)) break;
+            i += Character.charCount(cp);
+        }
+        tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        return i;
+    }
+
+    private static void addCjkBigrams(String run, Collection<String> tokens) {
+        int count = run.codePointCount(0, run.length());
+        if (count == 1) {
+            tokens.add(run);
+            return;
+        }
+        int i = 0;
+        while (true) {
+            int next = run.offsetByCodePoints(i, 1);
+            if (next >= run.length()) break;
+            int end = run.offsetByCodePoints(next, 1);
+            tokens.add(run.substring(i, end));
+            i = next;
+        }
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    static String normalizeNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return String.valueOf(value);
+        return normalize(BigDecimal.valueOf(value));
+    }
+
+    private static String normalizeNumber(String digits) {
+        try {
+            return normalize(new BigDecimal(digits));
+        } catch (NumberFormatException e) {
+            return digits;
+        }
+    }
+
+    private static String normalize(BigDecimal value) {
+        if (value.signum() == 0) return "0";
+        return value.stripTrailingZeros().toPlainString();
+    }
+
+    // 单元格位置，用于多词查询的交集
+    private static final class CellKey {
+        final int doc;
+        final int sheet;
+        final int row;
+        final int column;
+
+        CellKey(int doc, int sheet, int row, int column) {
+            this.doc = doc;
+            this.sheet = sheet;
+            this.row = row;
+            this.column = column;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CellKey)) return false;
+            CellKey other = (CellKey) o;
+            return doc == other.doc && sheet == other.sheet && row == other.row && column == other.column;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((doc * 31 + sheet) * 31 + row) * 31 + column;
+        }
+    }
+
+    // 可增长的 int 数组，避免装箱
+    private static final class IntList {
+        int[] data = new int[8];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: SearchIndex <index-dir> <query>");
+            System.err.println("       SearchIndex <index-dir> --add <file>...");
+            System.exit(1);
+        }
+
+        SearchIndex index = new SearchIndex(new File(args[0]));
+        if ("--add".equals(args[1])) {
+            for (int i = 2; i < args.length; i++) {
+                File file = new File(args[i]);
+                if (!index.isCurrent(file)) {
+                    index.index(file);
+                }
+                System.out.println("Indexed " + file);
+            }
+            return;
+        }
+
+        String query = String.join(" ", Arrays.asList(args).subList(1, args.length));
+        long start = System.nanoTime();
+        List<Hit> hits = index.search(query, 1000);
+        for (Hit hit : hits) {
+            System.out.println(hit);
+        }
+        System.out.printf("%d hit(s) in %.1f ms%n", hits.size(), (System.nanoTime() - start) / 1e6);
+    }
+}
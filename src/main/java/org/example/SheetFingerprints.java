@@ -0,0 +1,235 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.usermodel.Shape;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * 增量转换使用的工作表指纹。
+ * <p>
+ * 每个工作表按内容（值、公式、样式、合并区域、列宽、行高、图片）计算一个 SHA-256，
+ * 与转换选项一起保存在输出文件旁的 {@code .fingerprints} 文件中。
+ * 字符串按实际文本参与计算，不依赖 SST 下标，因此修改一个工作表不会使其它工作表的指纹失效。
+ */
+class SheetFingerprints {
+
+    static final String SUFFIX = ".fingerprints";
+
+    private static final String OPTIONS_KEY = "options";
+    private static final String SHEET_PREFIX = "sheet.";
+
+    private final String options;
+    // 工作表名 -> 指纹，保持工作表顺序
+    private final LinkedHashMap<String, String> sheets;
+
+    private SheetFingerprints(String options, LinkedHashMap<String, String> sheets) {
+        this.options = options;
+        this.sheets = sheets;
+    }
+
+    static SheetFingerprints compute(Workbook workbook, ConversionOptions options) {
+        LinkedHashMap<String, String> sheets = new LinkedHashMap<>();
+        for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+            Sheet sheet = workbook.getSheetAt(i);
+            sheets.put(sheet.getSheetName(), fingerprint(sheet));
+        }
+        return new SheetFingerprints(options.fingerprint(), sheets);
+    }
+
+    static File fileFor(File outputFile) {
+        return new File(outputFile.getParentFile(), outputFile.getName() + SUFFIX);
+    }
+
+    // 读取上次保存的指纹，文件不存在或损坏时返回 null
+    static SheetFingerprints load(File outputFile) {
+        File file = fileFor(outputFile);
+        if (!file.isFile()) return null;
+
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            return null;
+        }
+
+        LinkedHashMap<String, String> sheets = new LinkedHashMap<>();
+        for (int i = 0; ; i++) {
+            String entry = properties.getProperty(SHEET_PREFIX + i);
+            if (entry == null) break;
+            int split = entry.lastIndexOf(':');
+            if (split < 0) return null;
+            sheets.put(entry.substring(0, split), entry.substring(split + 1));
+        }
+        return new SheetFingerprints(properties.getProperty(OPTIONS_KEY, ""), sheets);
+    }
+
+    // 输出文件重写前调用，避免转换中途失败后留下过期的指纹
+    static void invalidate(File outputFile) {
+        File file = fileFor(outputFile);
+        if (file.exists() && !file.delete()) {
+            System.err.println("Error deleting " + file);
+        }
+    }
+
+    void store(File outputFile) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(fileFor(outputFile)), StandardCharsets.UTF_8)) {
+            Properties properties = new Properties();
+            properties.setProperty(OPTIONS_KEY, options);
+            int i = 0;
+            for (Map.Entry<String, String> entry : sheets.entrySet()) {
+                properties.setProperty(SHEET_PREFIX + i++, entry.getKey() + ":" + entry.getValue());
+            }
+            properties.store(writer, null);
+        }
+    }
+
+    // 工作表集合、顺序、内容和选项都没有变化
+    boolean matches(SheetFingerprints previous) {
+        return previous != null
+                && options.equals(previous.options)
+                && new ArrayList<>(sheets.entrySet()).equals(new ArrayList<>(previous.sheets.entrySet()));
+    }
+
+    private static String fingerprint(Sheet sheet) {
+        Digest digest = new Digest();
+        Workbook workbook = sheet.getWorkbook();
+
+        int lastColumn = 0;
+        for (Row row : sheet) {
+            lastColumn = Math.max(lastColumn, row.getLastCellNum());
+            digest.put('R').put(row.getRowNum()).put(row.getHeight()).put(row.getZeroHeight());
+            for (Cell cell : row) {
+                digest.put('C').put(cell.getColumnIndex()).put(cell.getCellType().ordinal());
+                putValue(digest, cell);
+                putStyle(digest, cell.getCellStyle(), workbook);
+            }
+        }
+
+        for (int i = 0; i < sheet.getNumMergedRegions(); i++) {
+            CellRangeAddress region = sheet.getMergedRegion(i);
+            digest.put('M').put(region.formatAsString());
+            lastColumn = Math.max(lastColumn, region.getLastColumn() + 1);
+        }
+
+        // 与 SheetLayout 相同的列范围
+        digest.put('D').put(sheet.getDefaultColumnWidth()).put(sheet.getDefaultRowHeight());
+        for (int col = 0; col < lastColumn; col++) {
+            digest.put(sheet.getColumnWidth(col)).put(sheet.isColumnHidden(col));
+        }
+
+        Drawing<?> drawing = sheet.getDrawingPatriarch();
+        if (drawing != null) {
+            for (Shape shape : drawing) {
+                if (shape instanceof Picture) {
+                    Picture picture = (Picture) shape;
+                    ClientAnchor anchor = picture.getClientAnchor();
+                    digest.put('P').put(anchor.getCol1()).put(anchor.getRow1())
+                            .put(anchor.getCol2()).put(anchor.getRow2())
+                            .put(anchor.getDx1()).put(anchor.getDy1()).put(anchor.getDx2()).put(anchor.getDy2())
+                            .put(picture.getPictureData().getData());
+                }
+            }
+        }
+
+        return digest.hex();
+    }
+
+    private static void putValue(Digest digest, Cell cell) {
+        switch (cell.getCellType()) {
+            case STRING:
+                digest.put(cell.getStringCellValue());
+                break;
+            case NUMERIC:
+                digest.put(Double.doubleToLongBits(cell.getNumericCellValue()));
+                break;
+            case BOOLEAN:
+                digest.put(cell.getBooleanCellValue());
+                break;
+            case FORMULA:
+                // 缓存结果也会写入输出
+                digest.put(cell.getCellFormula()).put(cell.getCachedFormulaResultType().ordinal());
+                if (cell.getCachedFormulaResultType() == CellType.NUMERIC) {
+                    digest.put(Double.doubleToLongBits(cell.getNumericCellValue()));
+                } else if (cell.getCachedFormulaResultType() == CellType.STRING) {
+                    digest.put(cell.getStringCellValue());
+                }
+                break;
+            case ERROR:
+                digest.put(cell.getErrorCellValue());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void putStyle(Digest digest, CellStyle style, Workbook workbook) {
+        Font font = workbook.getFontAt(style.getFontIndex());
+        digest.put(font.getFontName()).put(font.getFontHeight()).put(font.getBold()).put(font.getItalic())
+                .put(font.getColor()).put(font.getUnderline()).put(font.getStrikeout()).put(font.getTypeOffset());
+        digest.put(style.getDataFormatString());
+        // 与 copyCellStyle 复制的属性相同
+        for (StyleAttributes.Attribute<?> attribute : StyleAttributes.ALL) {
+            digest.put(String.valueOf(attribute.get(style)));
+        }
+    }
+
+    // MessageDigest 的简单包装
+    private static class Digest {
+        private final MessageDigest md;
+        private final byte[] buffer = new byte[8];
+
+        Digest() {
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        Digest put(char c) {
+            md.update((byte) c);
+            return this;
+        }
+
+        Digest put(boolean b) {
+            md.update((byte) (b ? 1 : 0));
+            return this;
+        }
+
+        Digest put(long v) {
+            for (int i = 0; i < 8; i++) {
+                buffer[i] = (byte) (v >>> (i * 8));
+            }
+            md.update(buffer, 0, 8);
+            return this;
+        }
+
+        Digest put(String s) {
+            if (s == null) return put(-1);
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            put(bytes.length);
+            md.update(bytes);
+            return this;
+        }
+
+        Digest put(byte[] bytes) {
+            put(bytes.length);
+            md.update(bytes);
+            return this;
+        }
+
+        String hex() {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+import java.util.Arrays;
+
+/**
+ * 工作表布局（列宽、隐藏列、默认宽高、自定义行高）。
+ * 在复制行的同时一次性收集，复制结束后批量应用到输出工作表，
+ * 开销与单元格数量成线性关系，空行、稀疏行都不会出错。
+ */
+class SheetLayout {
+
+    private final Sheet sourceSheet;
+
+    // 真实的最大列数（所有行及合并区域中最大的 lastCellNum）
+    private int columnExtent;
+
+    // 自定义行高：行号与高度成对保存
+    private int[] rowNumbers = new int[16];
+    private short[] rowHeights = new short[16];
+    private boolean[] rowHidden = new boolean[16];
+    private int rowCount;
+
+    SheetLayout(Sheet sourceSheet) {
+        this.sourceSheet = sourceSheet;
+    }
+
+    // 复制每一行时调用
+    void observeRow(Row row) {
+        short lastCellNum = row.getLastCellNum();
+        if (lastCellNum > columnExtent) {
+            columnExtent = lastCellNum;
+        }
+
+        short height = row.getHeight();
+        boolean hidden = row.getZeroHeight();
+        if (!hidden && height == sourceSheet.getDefaultRowHeight()) {
+            return;
+        }
+
+        if (rowCount == rowNumbers.length) {
+            int newLength = rowCount * 2;
+            rowNumbers = Arrays.copyOf(rowNumbers, newLength);
+            rowHeights = Arrays.copyOf(rowHeights, newLength);
+            rowHidden = Arrays.copyOf(rowHidden, newLength);
+        }
+        rowNumbers[rowCount] = row.getRowNum();
+        rowHeights[rowCount] = height;
+        rowHidden[rowCount] = hidden;
+        rowCount++;
+    }
+
+    int getColumnExtent() {
+        return columnExtent;
+    }
+
+    // 批量应用到输出工作表，需在所有行复制完成后调用
+    void applyTo(Sheet outputSheet) {
+        // 合并区域可能超出最后一个单元格
+        for (int i = 0; i < sourceSheet.getNumMergedRegions(); i++) {
+            CellRangeAddress region = sourceSheet.getMergedRegion(i);
+            if (region.getLastColumn() + 1 > columnExtent) {
+                columnExtent = region.getLastColumn() + 1;
+            }
+        }
+
+        // 默认列宽、行高
+        int defaultColumnWidth = sourceSheet.getDefaultColumnWidth();
+        outputSheet.setDefaultColumnWidth(defaultColumnWidth);
+        outputSheet.setDefaultRowHeight(sourceSheet.getDefaultRowHeight());
+
+        // 列宽与隐藏列，只写与默认值不同的列
+        int defaultWidthUnits = defaultColumnWidth * 256;
+        for (int col = 0; col < columnExtent; col++) {
+            int width = sourceSheet.getColumnWidth(col);
+            if (width != defaultWidthUnits) {
+                outputSheet.setColumnWidth(col, width);
+            }
+            if (sourceSheet.isColumnHidden(col)) {
+                outputSheet.setColumnHidden(col, true);
+            }
+        }
+
+        // 自定义行高
+        for (int i = 0; i < rowCount; i++) {
+            Row outputRow = outputSheet.getRow(rowNumbers[i]);
+            if (outputRow == null) {
+                outputRow = outputSheet.createRow(rowNumbers[i]);
+            }
+            outputRow.setHeight(rowHeights[i]);
+            if (rowHidden[i]) {
+                outputRow.setZeroHeight(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.*;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作簿概览：并行汇总每个工作表的尺寸、前几行、表头行、列类型和图片缩略图。
+ * <p>
+ * 各工作表的汇总互不依赖，分别提交到线程池计算；绘图对象的解析会修改工作表的记录列表，
+ * 所以图片先在调用线程中按顺序收集，缩略图的解码和缩放再放到各个任务里。
+ * EVALUATE 模式下公式计算器不是线程安全的，此时退回到顺序计算。
+ */
+class SheetOverview {
+
+    static final int THUMBNAIL_SIZE = 64;
+    // 列类型推断最多采样的数据行数
+    private static final int TYPE_SAMPLE_ROWS = 200;
+    // 在前几行中查找表头
+    private static final int HEADER_SEARCH_ROWS = 10;
+    // 概览中每个工作表最多显示的列数
+    static final int MAX_COLUMNS = 50;
+
+    private static final ExecutorService POOL = newExecutor();
+
+    // 单个工作表的汇总结果
+    static class Summary {
+        final String name;
+        final int firstRow;
+        final int lastRow;
+        final int columns;
+        // 表头所在行，-1 表示没有识别出表头
+        final int headerRow;
+        final List<String> columnTypes;
+        // 前几行的单元格文本，按行、列排列
+        final List<List<String>> rows;
+        // PNG 缩略图，无法解码的图片为 null
+        final List<byte[]> thumbnails;
+        final List<String> pictureTypes;
+
+        Summary(String name, int firstRow, int lastRow, int columns, int headerRow, List<String> columnTypes,
+                List<List<String>> rows, List<byte[]> thumbnails, List<String> pictureTypes) {
+            this.name = name;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.columns = columns;
+            this.headerRow = headerRow;
+            this.columnTypes = columnTypes;
+            this.rows = rows;
+            this.thumbnails = thumbnails;
+            this.pictureTypes = pictureTypes;
+        }
+
+        String thumbnailDataUri(int index) {
+            byte[] png = thumbnails.get(index);
+            return png == null ? null : "data:image/png;base64," + Base64.getEncoder().encodeToString(png);
+        }
+    }
+
+    private SheetOverview() {
+    }
+
+    // 汇总工作簿中的所有工作表，单元格文本与普通预览一致
+    static List<Summary> summarize(Workbook workbook, FormulaMode formulaMode, int previewRows) throws Exception {
+        int sheetCount = workbook.getNumberOfSheets();
+
+        List<List<PictureData>> pictures = new ArrayList<>();
+        for (int i = 0; i < sheetCount; i++) {
+            pictures.add(collectPictures(workbook.getSheetAt(i)));
+        }
+
+        List<Summary> summaries = new ArrayList<>();
+        if (formulaMode == FormulaMode.EVALUATE || sheetCount == 1) {
+            CellTextFormatter text = new CellTextFormatter(new FormulaHandler(formulaMode, workbook), workbook);
+            for (int i = 0; i < sheetCount; i++) {
+                summaries.add(summarizeSheet(workbook.getSheetAt(i), pictures.get(i), previewRows, text));
+            }
+            return summaries;
+        }
+
+        List<Future<Summary>> futures = new ArrayList<>();
+        for (int i = 0; i < sheetCount; i++) {
+            Sheet sheet = workbook.getSheetAt(i);
+            List<PictureData> sheetPictures = pictures.get(i);
+            futures.add(POOL.submit(() -> summarizeSheet(sheet, sheetPictures, previewRows,
+                    new CellTextFormatter(new FormulaHandler(formulaMode, workbook), workbook))));
+        }
+        try {
+            for (Future<Summary> future : futures) {
+                summaries.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            for (Future<Summary> future : futures) {
+                future.cancel(true);
+            }
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+        return summaries;
+    }
+
+    private static Summary summarizeSheet(Sheet sheet, List<PictureData> pictures, int previewRows,
+                                          CellTextFormatter text) {
+        int firstRow = sheet.getFirstRowNum();
+        int lastRow = sheet.getLastRowNum();
+        boolean empty = sheet.getPhysicalNumberOfRows() == 0;
+
+        int headerRow = empty ? -1 : findHeaderRow(sheet, firstRow, lastRow);
+        int columns = 0;
+        List<List<String>> rows = new ArrayList<>();
+        if (!empty) {
+            int previewEnd = Math.min(lastRow, firstRow + previewRows - 1);
+            for (int rn = firstRow; rn <= previewEnd; rn++) {
+                Row row = sheet.getRow(rn);
+                if (row != null) columns = Math.max(columns, row.getLastCellNum());
+            }
+            columns = Math.min(columns, MAX_COLUMNS);
+            for (int rn = firstRow; rn <= previewEnd; rn++) {
+                Row row = sheet.getRow(rn);
+                List<String> values = new ArrayList<>(columns);
+                for (int cn = 0; cn < columns; cn++) {
+                    Cell cell = row == null ? null : row.getCell(cn, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
+                    values.add(text.format(cell));
+                }
+                rows.add(values);
+            }
+        }
+
+        List<String> columnTypes = new ArrayList<>(columns);
+        int sampleStart = headerRow >= 0 ? headerRow + 1 : firstRow;
+        int sampleEnd = empty ? -1 : Math.min(lastRow, sampleStart + TYPE_SAMPLE_ROWS - 1);
+        for (int cn = 0; cn < columns; cn++) {
+            columnTypes.add(inferColumnType(sheet, cn, sampleStart, sampleEnd));
+        }
+
+        List<byte[]> thumbnails = new ArrayList<>();
+        List<String> pictureTypes = new ArrayList<>();
+        for (PictureData picture : pictures) {
+            thumbnails.add(thumbnail(picture.getData()));
+            pictureTypes.add(picture.getMimeType());
+        }
+
+        return new Summary(sheet.getSheetName(), empty ? 0 : firstRow, empty ? -1 : lastRow, columns, headerRow,
+                columnTypes, rows, thumbnails, pictureTypes);
+    }
+
+    // 前几行中第一个至少有两个非空单元格、且全部是文本的行
+    private static int findHeaderRow(Sheet sheet, int firstRow, int lastRow) {
+        int end = Math.min(lastRow, firstRow + HEADER_SEARCH_ROWS - 1);
+        for (int rn = firstRow; rn <= end; rn++) {
+            Row row = sheet.getRow(rn);
+            if (row == null) continue;
+
+            int textCells = 0;
+            boolean allText = true;
+            for (Cell cell : row) {
+                CellType type = cell.getCellType();
+                if (type == CellType.BLANK) continue;
+                if (type == CellType.STRING && !cell.getStringCellValue().trim().isEmpty()) {
+                    textCells++;
+                } else {
+                    allText = false;
+                    break;
+                }
+            }
+            if (allText && textCells >= 2) return rn;
+            // 遇到第一行含数据的非表头行就停止
+            if (!allText) return -1;
+        }
+        return -1;
+    }
+
+    private static String inferColumnType(Sheet sheet, int column, int firstRow, int lastRow) {
+        String type = null;
+        for (int rn = firstRow; rn <= lastRow; rn++) {
+            Row row = sheet.getRow(rn);
+            if (row == null) continue;
+            Cell cell = row.getCell(column, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
+            if (cell == null) continue;
+
+            String cellType = typeOf(cell);
+            if (cellType == null) continue;
+            if (type == null) {
+                type = cellType;
+            } else if (!type.equals(cellType)) {
+                return "混合";
+            }
+        }
+        return type == null ? "空" : type;
+    }
+
+    private static String typeOf(Cell cell) {
+        CellType type = cell.getCellType();
+        if (type == CellType.FORMULA) {
+            type = cell.getCachedFormulaResultType();
+        }
+        switch (type) {
+            case NUMERIC:
+                return DateUtil.isCellDateFormatted(cell) ? "日期" : "数字";
+            case STRING:
+                return cell.getRichStringCellValue().getString().trim().isEmpty() ? null : "文本";
+            case BOOLEAN:
+                return "布尔";
+            case ERROR:
+                return "错误";
+            default:
+                return null;
+        }
+    }
+
+    private static List<PictureData> collectPictures(Sheet sheet) {
+        List<PictureData> pictures = new ArrayList<>();
+        Drawing<?> drawing = sheet.getDrawingPatriarch();
+        if (drawing == null) return pictures;
+
+        for (Shape shape : drawing) {
+            if (shape instanceof Picture) {
+                try {
+                    PictureData data = ((Picture) shape).getPictureData();
+                    if (data != null) pictures.add(data);
+                } catch (Exception e) {
+                    System.err.println("Error reading picture: " + e.getMessage());
+                }
+            }
+        }
+        return pictures;
+    }
+
+    // 缩放到 THUMBNAIL_SIZE 以内并编码为 PNG，无法解码（如 EMF、WMF）时返回 null
+    private static byte[] thumbnail(byte[] data) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+            if (image == null) return null;
+
+            double scale = Math.min(1.0, (double) THUMBNAIL_SIZE / Math.max(image.getWidth(), image.getHeight()));
+            int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+            BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaled.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(scaled, "png", out);
+            return out.toByteArray();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread thread = new Thread(r, "xls-overview-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 转换时逐项复制的单元格样式属性（数字格式和字体另外处理）。
+ * ExcelConverter 按这个列表复制样式，SheetFingerprints 按同一个列表计算样式的哈希，
+ * 复制的属性有增减时两边保持一致。
+ */
+final class StyleAttributes {
+
+    static final class Attribute<T> {
+        final String name;
+        private final Function<CellStyle, T> getter;
+        private final BiConsumer<CellStyle, T> setter;
+
+        Attribute(String name, Function<CellStyle, T> getter, BiConsumer<CellStyle, T> setter) {
+            this.name = name;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        T get(CellStyle style) {
+            return getter.apply(style);
+        }
+
+        void copy(CellStyle source, CellStyle target) {
+            setter.accept(target, getter.apply(source));
+        }
+    }
+
+    static final List<Attribute<?>> ALL = Arrays.asList(
+            new Attribute<>("alignment", CellStyle::getAlignment, CellStyle::setAlignment),
+            new Attribute<>("verticalAlignment", CellStyle::getVerticalAlignment, CellStyle::setVerticalAlignment),
+            new Attribute<>("wrapText", CellStyle::getWrapText, CellStyle::setWrapText),
+            new Attribute<>("indention", CellStyle::getIndention, CellStyle::setIndention),
+            new Attribute<>("rotation", CellStyle::getRotation, CellStyle::setRotation),
+            new Attribute<>("hidden", CellStyle::getHidden, CellStyle::setHidden),
+            new Attribute<>("locked", CellStyle::getLocked, CellStyle::setLocked),
+            new Attribute<>("topBorderColor", CellStyle::getTopBorderColor, CellStyle::setTopBorderColor),
+            new Attribute<>("bottomBorderColor", CellStyle::getBottomBorderColor, CellStyle::setBottomBorderColor),
+            new Attribute<>("leftBorderColor", CellStyle::getLeftBorderColor, CellStyle::setLeftBorderColor),
+            new Attribute<>("rightBorderColor", CellStyle::getRightBorderColor, CellStyle::setRightBorderColor),
+            new Attribute<>("borderTop", CellStyle::getBorderTop, CellStyle::setBorderTop),
+            new Attribute<>("borderBottom", CellStyle::getBorderBottom, CellStyle::setBorderBottom),
+            new Attribute<>("borderLeft", CellStyle::getBorderLeft, CellStyle::setBorderLeft),
+            new Attribute<>("borderRight", CellStyle::getBorderRight, CellStyle::setBorderRight),
+            new Attribute<>("fillPattern", CellStyle::getFillPattern, CellStyle::setFillPattern),
+            new Attribute<Short>("fillForegroundColor", CellStyle::getFillForegroundColor,
+                    (style, color) -> style.setFillForegroundColor(color)),
+            new Attribute<Short>("fillBackgroundColor", CellStyle::getFillBackgroundColor,
+                    (style, color) -> style.setFillBackgroundColor(color)));
+
+    private StyleAttributes() {
+    }
+}
@@ -0,0 +1,216 @@
+package org.example;
+
+import java.net.IDN;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * URL 规范化：同一资源的不同写法得到同一个字符串，爬虫按规范化后的地址去重。
+ * <ul>
+ * <li>协议、主机名小写，国际化域名转为 ASCII，去掉主机名末尾的点和默认端口</li>
+ * <li>去掉片段（#...）、路径中的 {@code ;jsessionid=} 等会话参数，解析 . 和 .. 路径段，空路径写为 /</li>
+ * <li>非 ASCII 字符按 UTF-8 百分号编码，百分号编码统一为大写，非保留字符解码</li>
+ * <li>去掉会话 ID、跟踪参数（utm_*、gclid 等）和空参数，其余参数按名称、值排序</li>
+ * </ul>
+ */
+final class UrlCanonicalizer {
+
+    // 去掉的查询参数（小写比较）
+    static final Set<String> STRIPPED_PARAMETERS = new HashSet<>(Arrays.asList(
+            "jsessionid", "phpsessid", "aspsessionid", "sessionid", "session_id", "sid", "cfid", "cftoken",
+            "gclid", "dclid", "fbclid", "msclkid", "yclid", "mc_cid", "mc_eid", "_ga", "spm"));
+    // 去掉的查询参数前缀
+    static final String[] STRIPPED_PREFIXES = {"utm_", "aspsessionid"};
+    // 路径中的会话参数，如 /a;jsessionid=XYZ
+    private static final String[] PATH_SESSION_PARAMETERS = {";jsessionid=", ";phpsessid=", ";sid="};
+
+    private UrlCanonicalizer() {
+    }
+
+    // 只接受 http、https 的绝对地址，无法解析时返回 null；结果总是 ASCII，非 ASCII 字符按 UTF-8 百分号编码
+    static String canonicalize(String url) {
+        if (url == null) return null;
+        String text = url.trim();
+        int hash = text.indexOf('#');
+        if (hash >= 0) text = text.substring(0, hash);
+        // URL 能解析含空格、中文的地址，URI 不能（或原样保留非 ASCII 字符）
+        URL parsed;
+        try {
+            parsed = new URL(text);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+
+        String scheme = parsed.getProtocol().toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) return null;
+
+        String host = parsed.getHost();
+        if (host == null || host.isEmpty()) return null;
+        host = host.toLowerCase(Locale.ROOT);
+        while (host.endsWith(".")) host = host.substring(0, host.length() - 1);
+        try {
+            host = IDN.toASCII(host);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!isValidHost(host)) return null;
+
+        int port = parsed.getPort();
+        if (scheme.equals("http") && port == 80 || scheme.equals("https") && port == 443) {
+            port = -1;
+        }
+
+        StringBuilder result = new StringBuilder(text.length());
+        result.append(scheme).append("://");
+        if (parsed.getUserInfo() != null) {
+            result.append(encodeUnsafe(parsed.getUserInfo())).append('@');
+        }
+        result.append(host);
+        if (port != -1) result.append(':').append(port);
+        result.append(normalizePath(encodeUnsafe(parsed.getPath())));
+        String query = normalizeQuery(parsed.getQuery() == null ? null : encodeUnsafe(parsed.getQuery()));
+        if (!query.isEmpty()) result.append('?').append(query);
+        return result.toString();
+    }
+
+    // 主机名只能含字母、数字、- 和 .，IPv6 地址在方括号中
+    private static boolean isValidHost(String host) {
+        if (host.isEmpty()) return false;
+        if (host.startsWith("[")) return host.endsWith("]");
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-' || c == '.' || c == '_')) return false;
+        }
+        return true;
+    }
+
+    // 非 ASCII 字符（按 UTF-8）、空白、控制字符和 URL 中不允许的字符用百分号编码，已有的 % 编码保留，单独的 % 编码为 %25
+    static String encodeUnsafe(String text) {
+        StringBuilder encoded = null;
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            int c = bytes[i] & 0xFF;
+            boolean unsafe = c <= 0x20 || c >= 0x7F || c == '"' || c == '<' || c == '>' || c == '\\' || c == '^'
+                    || c == '`' || c == '{' || c == '|' || c == '}' || c == '[' || c == ']'
+                    || c == '%' && !(i + 2 < bytes.length && isHex((char) bytes[i + 1]) && isHex((char) bytes[i + 2]));
+            if (unsafe && encoded == null) {
+                encoded = new StringBuilder(bytes.length + 16);
+                for (int j = 0; j < i; j++) encoded.append((char) bytes[j]);
+            }
+            if (encoded == null) continue;
+            if (unsafe) {
+                encoded.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            } else {
+                encoded.append((char) c);
+            }
+        }
+        return encoded == null ? text : encoded.toString();
+    }
+
+    private static String normalizePath(String path) {
+        if (path == null || path.isEmpty()) return "/";
+        // 去掉路径中的会话参数（到下一个 / 或 ? 为止）
+        String lower = path.toLowerCase(Locale.ROOT);
+        for (String parameter : PATH_SESSION_PARAMETERS) {
+            int start = lower.indexOf(parameter);
+            if (start >= 0) {
+                int end = lower.indexOf('/', start);
+                path = end < 0 ? path.substring(0, start) : path.substring(0, start) + path.substring(end);
+                lower = path.toLowerCase(Locale.ROOT);
+            }
+        }
+
+        // 解析 . 和 .. 路径段
+        Deque<String> segments = new ArrayDeque<>();
+        String[] parts = path.split("/", -1);
+        for (int i = 1; i < parts.length; i++) {
+            String segment = normalizeEscapes(parts[i]);
+            boolean last = i == parts.length - 1;
+            if (segment.equals(".")) {
+                if (last) segments.addLast("");
+            } else if (segment.equals("..")) {
+                segments.pollLast();
+                if (last) segments.addLast("");
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        if (segments.isEmpty()) return "/";
+        StringBuilder result = new StringBuilder();
+        for (String segment : segments) {
+            result.append('/').append(segment);
+        }
+        return result.toString();
+    }
+
+    private static String normalizeQuery(String query) {
+        if (query == null || query.isEmpty()) return "";
+        List<String[]> parameters = new ArrayList<>();
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) continue;
+            int equals = pair.indexOf('=');
+            String name = normalizeEscapes(equals >= 0 ? pair.substring(0, equals) : pair);
+            String value = equals >= 0 ? normalizeEscapes(pair.substring(equals + 1)) : null;
+            if (name.isEmpty() || isStripped(name)) continue;
+            parameters.add(new String[]{name, value});
+        }
+        // 参数顺序不影响内容，按名称、值排序（没有值的排在前面）
+        parameters.sort((a, b) -> {
+            int byName = a[0].compareTo(b[0]);
+            if (byName != 0) return byName;
+            if (a[1] == null) return b[1] == null ? 0 : -1;
+            return b[1] == null ? 1 : a[1].compareTo(b[1]);
+        });
+
+        StringBuilder result = new StringBuilder();
+        for (String[] parameter : parameters) {
+            if (result.length() > 0) result.append('&');
+            result.append(parameter[0]);
+            if (parameter[1] != null) result.append('=').append(parameter[1]);
+        }
+        return result.toString();
+    }
+
+    private static boolean isStripped(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (STRIPPED_PARAMETERS.contains(lower)) return true;
+        for (String prefix : STRIPPED_PREFIXES) {
+            if (lower.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    // 百分号编码的十六进制统一为大写，非保留字符（字母、数字、-._~）解码
+    private static String normalizeEscapes(String text) {
+        if (text.indexOf('%') < 0) return text;
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '%' && i + 2 < text.length() && isHex(text.charAt(i + 1)) && isHex(text.charAt(i + 2))) {
+                int value = Character.digit(text.charAt(i + 1), 16) << 4 | Character.digit(text.charAt(i + 2), 16);
+                if (isUnreserved(value)) {
+                    result.append((char) value);
+                } else {
+                    result.append('%').append(Character.toUpperCase(text.charAt(i + 1)))
+                            .append(Character.toUpperCase(text.charAt(i + 2)));
+                }
+                i += 2;
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static boolean isHex(char c) {
+        return Character.digit(c, 16) >= 0;
+    }
+
+    private static boolean isUnreserved(int c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+}
@@ -0,0 +1,132 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 源 .xls 与转换结果 .xlsx 的比较结果（见 {@link OutputVerifier}）。
+ */
+public class VerificationReport {
+
+    public enum Kind {
+        SHEET, TYPE, VALUE, FORMULA, STYLE, MERGE, COLUMN, PICTURE
+    }
+
+    /**
+     * 一处差异
+     */
+    public static class Difference {
+        private final Kind kind;
+        private final String sheet;
+        private final String location;
+        private final String expected;
+        private final String actual;
+
+        Difference(Kind kind, String sheet, String location, String expected, String actual) {
+            this.kind = kind;
+            this.sheet = sheet;
+            this.location = location;
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getSheet() {
+            return sheet;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public String getExpected() {
+            return expected;
+        }
+
+        public String getActual() {
+            return actual;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + kind + "] " + (sheet == null ? "" : sheet + (location == null ? "" : "!" + location))
+                    + ": expected " + expected + ", actual " + actual;
+        }
+    }
+
+    private final List<Difference> differences = new ArrayList<>();
+    private long differenceCount;
+    private int sheetsCompared;
+    private long cellsCompared;
+    private long elapsedMillis;
+
+    void add(Difference difference) {
+        differences.add(difference);
+        differenceCount++;
+    }
+
+    // 合并一个工作表的结果，suppressed 为超出明细上限、只计数的差异
+    void addSheet(List<Difference> sheetDifferences, long suppressed, long cells) {
+        differences.addAll(sheetDifferences);
+        differenceCount += sheetDifferences.size() + suppressed;
+        sheetsCompared++;
+        cellsCompared += cells;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public boolean isEquivalent() {
+        return differenceCount == 0;
+    }
+
+    // 记录了明细的差异，每个工作表最多 OutputVerifier.MAX_DIFFERENCES_PER_SHEET 条
+    public List<Difference> getDifferences() {
+        return Collections.unmodifiableList(differences);
+    }
+
+    public long getDifferenceCount() {
+        return differenceCount;
+    }
+
+    public int getSheetsCompared() {
+        return sheetsCompared;
+    }
+
+    public long getCellsCompared() {
+        return cellsCompared;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    // 供测试使用：有差异时抛出 AssertionError，消息中带有差异报告
+    public void assertEquivalent() {
+        if (!isEquivalent()) {
+            throw new AssertionError(toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(isEquivalent() ? "equivalent" : differenceCount + " difference(s)")
+                .append(", sheets ").append(sheetsCompared)
+                .append(", cells ").append(cellsCompared)
+                .append(", elapsed ").append(elapsedMillis).append(" ms");
+        for (Difference difference : differences) {
+            report.append(System.lineSeparator()).append("  ").append(difference);
+        }
+        if (differenceCount > differences.size()) {
+            report.append(System.lineSeparator()).append("  ... ")
+                    .append(differenceCount - differences.size()).append(" more");
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,165 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * 已解析工作簿的 LRU 缓存（按路径、修改时间、大小识别）。
+ * <p>
+ * 解析 .xls 后 POI 按行号把行保存在有序表中，{@code getRow} 是一次查找，
+ * 所以保留解析结果就等于保留了一份行索引：之后任意行、列窗口的查询只与窗口大小有关。
+ * 工作簿不是线程安全的，访问都在条目锁内进行；被淘汰的条目也在条目锁内关闭。
+ * 解析在表锁之外进行：表中先放入一个 future，同一文件的其它请求等待它，其它文件的请求不受影响；
+ * 被淘汰的条目在释放表锁之后才关闭。
+ */
+class WorkbookCache {
+
+    interface WorkbookAction<T> {
+        T apply(Entry entry) throws Exception;
+    }
+
+    // 缓存条目，额外保存调用方需要随工作簿复用的对象（如公式处理器）
+    static class Entry {
+        final Workbook workbook;
+        final long lastModified;
+        final long length;
+        private final Map<Object, Object> attachments = new LinkedHashMap<>();
+        private boolean closed;
+
+        Entry(Workbook workbook, long lastModified, long length) {
+            this.workbook = workbook;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T attachment(Object key, Function<Workbook, T> factory) {
+            return (T) attachments.computeIfAbsent(key, k -> factory.apply(workbook));
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, CompletableFuture<Entry>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    WorkbookCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    // 在条目锁内对工作簿执行操作，文件有变化时重新解析
+    <T> T withWorkbook(File file, WorkbookAction<T> action) throws Exception {
+        while (true) {
+            Entry entry = acquire(file);
+            synchronized (entry) {
+                if (!entry.closed) {
+                    return action.apply(entry);
+                }
+            }
+            // 刚好被淘汰，重新获取
+        }
+    }
+
+    void clear() {
+        List<CompletableFuture<Entry>> removed;
+        synchronized (entries) {
+            removed = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        removed.forEach(WorkbookCache::closeWhenLoaded);
+    }
+
+    private Entry acquire(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        while (true) {
+            CompletableFuture<Entry> future;
+            boolean loading = false;
+            List<CompletableFuture<Entry>> evicted = new ArrayList<>();
+            synchronized (entries) {
+                future = entries.get(key);
+                if (future != null && future.isDone() && !isCurrent(future, lastModified, length)) {
+                    entries.remove(key);
+                    evicted.add(future);
+                    future = null;
+                }
+                if (future == null) {
+                    future = new CompletableFuture<>();
+                    entries.put(key, future);
+                    loading = true;
+
+                    Iterator<Map.Entry<String, CompletableFuture<Entry>>> iterator = entries.entrySet().iterator();
+                    while (entries.size() > maxEntries && iterator.hasNext()) {
+                        Map.Entry<String, CompletableFuture<Entry>> eldest = iterator.next();
+                        if (eldest.getKey().equals(key)) continue;
+                        iterator.remove();
+                        evicted.add(eldest.getValue());
+                    }
+                }
+            }
+            evicted.forEach(WorkbookCache::closeWhenLoaded);
+
+            if (loading) {
+                try {
+                    future.complete(new Entry(XlsInput.openWorkbook(file), lastModified, length));
+                } catch (IOException | RuntimeException e) {
+                    synchronized (entries) {
+                        entries.remove(key, future);
+                    }
+                    future.completeExceptionally(e);
+                    throw e;
+                }
+            }
+
+            Entry entry = await(future);
+            if (entry.lastModified == lastModified && entry.length == length) {
+                return entry;
+            }
+            // 等到的是文件修改前的解析结果，下一轮替换
+        }
+    }
+
+    // 解析失败的条目也视为过期
+    private static boolean isCurrent(CompletableFuture<Entry> future, long lastModified, long length) {
+        if (future.isCompletedExceptionally()) return false;
+        Entry entry = future.join();
+        return entry.lastModified == lastModified && entry.length == length;
+    }
+
+    private static Entry await(CompletableFuture<Entry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for workbook");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    // 正在解析的条目在解析完成后关闭
+    private static void closeWhenLoaded(CompletableFuture<Entry> future) {
+        future.thenAccept(WorkbookCache::close);
+    }
+
+    private static void close(Entry entry) {
+        synchronized (entry) {
+            entry.closed = true;
+            try {
+                entry.workbook.close();
+            } catch (IOException e) {
+                System.err.println("Error closing workbook: " + e.getMessage());
+            }
+        }
+    }
+}
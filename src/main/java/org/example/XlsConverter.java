@@ -0,0 +1,117 @@
+package org.example;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 可复用、线程安全的转换器实例，适合在服务端长期持有并被多个线程共享。
+ * <p>
+ * 选项在创建时复制一份，之后不会再变；压缩线程池在实例内复用，不必每次转换重新创建；
+ * 每个转换的临时状态（样式映射、公式求值器等）仍然在各自线程内创建，互不影响。
+ * {@link #warmUp()} 用一个小工作簿跑一遍完整转换，提前完成类加载、XMLBeans 初始化和热点代码编译。
+ */
+public class XlsConverter implements AutoCloseable {
+
+    private final ConversionOptions options;
+    private final ExecutorService writeExecutor;
+
+    public XlsConverter() {
+        this(ConversionOptions.defaults());
+    }
+
+    public XlsConverter(ConversionOptions options) {
+        this.options = options.copy();
+        int threads = this.options.getWriteThreads();
+        this.writeExecutor = threads > 1 ? newDaemonPool(threads) : null;
+    }
+
+    public void convert(File inputFile, File outputFile) throws Exception {
+        newJob(inputFile, outputFile).call();
+    }
+
+    // 创建可取消的任务，共享本实例的压缩线程池
+    public ConversionJob newJob(File inputFile, File outputFile) {
+        return new ConversionJob(inputFile, outputFile, options, writeExecutor);
+    }
+
+    public Future<ConversionProgress> submit(File inputFile, File outputFile, ExecutorService executor) {
+        return newJob(inputFile, outputFile).submit(executor);
+    }
+
+    public ConversionOptions getOptions() {
+        return options.copy();
+    }
+
+    // 预热：转换一个包含各类单元格、样式和公式的小工作簿；临时文件不进入搜索索引和结果缓存
+    public void warmUp() throws Exception {
+        ConversionOptions warmUpOptions = options.copy().setSearchIndex(null).setResultCache(null).setIncremental(false);
+        File input = File.createTempFile("xls-warmup", ".xls");
+        File output = File.createTempFile("xls-warmup", ".xlsx");
+        try {
+            writeWarmUpWorkbook(input);
+            for (int i = 0; i < 3; i++) {
+                new ConversionJob(input, output, warmUpOptions, writeExecutor).call();
+            }
+        } finally {
+            deleteQuietly(input);
+            deleteQuietly(output);
+            deleteQuietly(SheetFingerprints.fileFor(output));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writeExecutor != null) {
+            writeExecutor.shutdown();
+        }
+    }
+
+    private static void writeWarmUpWorkbook(File file) throws IOException {
+        try (HSSFWorkbook workbook = new HSSFWorkbook();
+             OutputStream out = new FileOutputStream(file)) {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+            CellStyle fillStyle = workbook.createCellStyle();
+            fillStyle.setFillForegroundColor(IndexedColors.YELLOW.getIndex());
+            fillStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+
+            Sheet sheet = workbook.createSheet("warmup");
+            for (int r = 0; r < 200; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue("row " + r);
+                row.createCell(1).setCellValue(r * 1.5);
+                row.createCell(2).setCellValue(r % 2 == 0);
+                Cell date = row.createCell(3);
+                date.setCellValue(new java.util.Date());
+                date.setCellStyle(dateStyle);
+                row.createCell(4).setCellFormula("B" + (r + 1) + "*2");
+                row.createCell(5).setCellStyle(fillStyle);
+            }
+            workbook.write(out);
+        }
+    }
+
+    private static void deleteQuietly(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private static ExecutorService newDaemonPool(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "xlsx-deflate-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
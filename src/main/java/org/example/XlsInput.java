@@ -0,0 +1,64 @@
+package org.example;
+
+import org.apache.poi.EncryptedDocumentException;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 打开输入工作簿。
+ * <p>
+ * 通过 {@link java.io.FileInputStream} 打开时，POI 会把整个 OLE2 容器复制到堆上的字节数组里；
+ * 这里改为通过只读的文件通道打开 POIFS，扇区按需读入小的堆缓冲区，不复制整个文件。
+ * POI 只在通道可写时使用内存映射，但转换不应要求输入文件可写（共享、被锁定的文件，
+ * Windows 上还会阻止其它程序写入），因此始终以只读方式打开。
+ */
+final class XlsInput {
+
+    private XlsInput() {
+    }
+
+    static Workbook openWorkbook(File file) throws IOException {
+        return openWorkbook(file, null);
+    }
+
+    // password 为 null 时按未加密（或 Excel 默认密码）打开
+    static Workbook openWorkbook(File file, String password) throws IOException {
+        if (FileMagic.valueOf(file) != FileMagic.OLE2) {
+            // .xlsx 等非 OLE2 文件
+            return WorkbookFactory.create(file, password, true);
+        }
+
+        POIFSFileSystem fs = openFileSystem(file);
+        try {
+            return WorkbookFactory.create(fs.getRoot(), password);
+        } catch (IOException | RuntimeException e) {
+            fs.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开工作簿，失败时（密码错误除外）逐条读取记录抢救可恢复的内容。
+     * report 为 null 时不抢救，直接抛出原来的异常。
+     */
+    static Workbook openWorkbook(File file, String password, SalvageReport report) throws IOException {
+        try {
+            return openWorkbook(file, password);
+        } catch (EncryptedDocumentException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            if (report == null || FileMagic.valueOf(file) != FileMagic.OLE2) throw e;
+            report.openFailed(e);
+            return SalvageReader.read(file, password, report);
+        }
+    }
+
+    static POIFSFileSystem openFileSystem(File file) throws IOException {
+        return new POIFSFileSystem(file, true);
+    }
+}
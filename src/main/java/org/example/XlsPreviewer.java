@@ -1,67 +1,243 @@
 package org.example;
 
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.*;
 
-import java.io.FileInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.*;
 
 public class XlsPreviewer {
 
     private static final int MAX_PREVIEW_ROWS = 100; // 限制预览行数
+    private static final int OVERVIEW_ROWS = 5; // 概览中每个工作表显示的行数
+    private static final int MAX_CACHED_WORKBOOKS = 4; // 区域查询保留的已解析工作簿数
+
+    private final FormulaMode formulaMode;
+    // 预览过的文件加入检索索引，为 null 时不建索引
+    private final SearchIndex searchIndex;
+    // 区域查询复用解析结果，翻页、横向滚动时不再重新解析文件
+    private final WorkbookCache workbooks = new WorkbookCache(MAX_CACHED_WORKBOOKS);
+
+    public XlsPreviewer() {
+        this(FormulaMode.CACHED_VALUE);
+    }
+
+    public XlsPreviewer(FormulaMode formulaMode) {
+        this(formulaMode, null);
+    }
+
+    public XlsPreviewer(FormulaMode formulaMode, SearchIndex searchIndex) {
+        this.formulaMode = formulaMode;
+        this.searchIndex = searchIndex;
+    }
 
     public String previewXls(String filePath) throws Exception {
-        StringBuilder html = new StringBuilder();
-        html.append("<html><body><table border='1'>");
+        StringWriter html = new StringWriter();
+        try {
+            previewXls(filePath, html);
+        } catch (Exception e) {
+            return "解析失败: " + e.getMessage();
+        }
+        return html.toString();
+    }
 
-        try (FileInputStream fis = new FileInputStream(filePath);
-             Workbook workbook = new HSSFWorkbook(fis)) { // 使用 HSSF 处理 .xls
+    // 预览第一个工作表的前 MAX_PREVIEW_ROWS 行，分块写入 out
+    public void previewXls(String filePath, Writer out) throws Exception {
+        File file = new File(filePath);
+        // 无法正常解析时抢救可恢复的内容，并在预览前说明丢失了什么
+        SalvageReport salvage = new SalvageReport();
+        try (Workbook workbook = XlsInput.openWorkbook(file, null, salvage)) {
+            if (!salvage.isRecordLevel()) {
+                indexIfNeeded(file, workbook);
+            }
 
+            FormulaHandler formulas = new FormulaHandler(formulaMode, workbook);
+            CellTextFormatter text = new CellTextFormatter(formulas, workbook);
             Sheet sheet = workbook.getSheetAt(0); // 读取第一个工作表
             Iterator<Row> rowIterator = sheet.iterator();
+            FlightEvents.Span span = FlightEvents.SHEET_RENDER.begin();
 
+            HtmlChunkWriter html = new HtmlChunkWriter(out);
+            html.markup("<html><body>");
+            if (salvage.isRecordLevel()) {
+                html.markup("<pre>").text("文件已损坏，只显示可恢复的内容：" + salvage).markup("</pre>");
+            }
+            html.markup("<table border='1'>");
             int rowCount = 0;
+            long cellCount = 0;
             while (rowIterator.hasNext() && rowCount < MAX_PREVIEW_ROWS) {
                 Row row = rowIterator.next();
-                html.append("<tr>");
-
                 // 处理空行（POI可能跳过空行）
-                int maxCellIndex = row.getLastCellNum();
-                for (int cn = 0; cn <= maxCellIndex; cn++) {
-                    Cell cell = row.getCell(cn, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-                    html.append("<td>").append(getCellValue(cell)).append("</td>");
-                }
-
-                html.append("</tr>");
+                cellCount += writeRow(html, row, 0, row.getLastCellNum(), text);
                 rowCount++;
             }
+            html.markup("</table></body></html>");
+            html.flush();
+            span.commit(filePath, sheet.getSheetName(), rowCount, cellCount);
+        }
+    }
 
+    public String previewRange(String filePath, int sheetIndex, int firstRow, int lastRow,
+                               int firstCol, int lastCol) throws Exception {
+        StringWriter html = new StringWriter();
+        try {
+            previewRange(filePath, sheetIndex, firstRow, lastRow, firstCol, lastCol, html);
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
             return "解析失败: " + e.getMessage();
         }
-
-        html.append("</table></body></html>");
         return html.toString();
     }
 
-    private String getCellValue(Cell cell) {
-        if (cell == null) return "";
+    /**
+     * 预览任意工作表的一个单元格区域（行、列下标从 0 开始，包含两端）。
+     * 首次查询时解析文件并缓存，之后按行号直接定位行、按列号直接定位单元格，
+     * 耗时只与区域大小有关，与区域在表中的位置无关。
+     */
+    public void previewRange(String filePath, int sheetIndex, int firstRow, int lastRow,
+                             int firstCol, int lastCol, Writer out) throws Exception {
+        if (firstRow < 0 || firstCol < 0 || lastRow < firstRow || lastCol < firstCol) {
+            throw new IllegalArgumentException("Invalid range: rows " + firstRow + "-" + lastRow
+                    + ", columns " + firstCol + "-" + lastCol);
+        }
+
+        File file = new File(filePath);
+        workbooks.withWorkbook(file, entry -> {
+            Workbook workbook = entry.workbook;
+            indexIfNeeded(file, workbook);
+            if (sheetIndex < 0 || sheetIndex >= workbook.getNumberOfSheets()) {
+                throw new IllegalArgumentException("Sheet index out of range: " + sheetIndex);
+            }
+            // 格式缓存随工作簿保留，后续区域查询直接复用
+            CellTextFormatter text = entry.attachment(formulaMode,
+                    wb -> new CellTextFormatter(new FormulaHandler(formulaMode, wb), wb));
+            Sheet sheet = workbook.getSheetAt(sheetIndex);
+            FlightEvents.Span span = FlightEvents.SHEET_RENDER.begin();
+
+            HtmlChunkWriter html = new HtmlChunkWriter(out);
+            html.markup("<html><body><table border='1'>");
+            // 超出已有数据的部分不输出空行
+            int maxRow = Math.min(lastRow, sheet.getLastRowNum());
+            long cellCount = 0;
+            for (int rn = firstRow; rn <= maxRow; rn++) {
+                Row row = sheet.getRow(rn);
+                if (row == null) {
+                    html.markup("<tr></tr>");
+                    continue;
+                }
+                cellCount += writeRow(html, row, firstCol, Math.min(lastCol, row.getLastCellNum() - 1), text);
+            }
+            html.markup("</table></body></html>");
+            html.flush();
+            span.commit(filePath, sheet.getSheetName(), Math.max(0, maxRow - firstRow + 1), cellCount);
+            return null;
+        });
+    }
+
+    public String previewOverview(String filePath) throws Exception {
+        return previewOverview(filePath, OVERVIEW_ROWS);
+    }
 
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getDateCellValue().toString();
+    /**
+     * 所有工作表的概览：尺寸、表头行、列类型、前几行数据和图片缩略图。
+     * 各工作表并行汇总，结果随解析后的工作簿一起缓存，文件未变化时再次打开概览不再重新计算。
+     */
+    public String previewOverview(String filePath, int rowsPerSheet) throws Exception {
+        try {
+            File file = new File(filePath);
+            return workbooks.withWorkbook(file, entry -> {
+                indexIfNeeded(file, entry.workbook);
+                List<SheetOverview.Summary> summaries = entry.attachment("overview:" + formulaMode + ":" + rowsPerSheet,
+                        wb -> {
+                            try {
+                                return SheetOverview.summarize(wb, formulaMode, rowsPerSheet);
+                            } catch (Exception e) {
+                                throw new IllegalStateException(e);
+                            }
+                        });
+                StringWriter out = new StringWriter();
+                writeOverview(new HtmlChunkWriter(out), summaries);
+                return out.toString();
+            });
+        } catch (Exception e) {
+            Throwable cause = e instanceof IllegalStateException && e.getCause() != null ? e.getCause() : e;
+            return "解析失败: " + cause.getMessage();
+        }
+    }
+
+    private void writeOverview(HtmlChunkWriter html, List<SheetOverview.Summary> summaries) throws IOException {
+        html.markup("<html><body>");
+        for (SheetOverview.Summary summary : summaries) {
+            html.markup("<h3>").text(summary.name).markup("</h3>");
+            html.markup("<p>");
+            if (summary.lastRow < 0) {
+                html.text("空工作表");
+            } else {
+                html.text("行 ").text(summary.firstRow + 1).text("-").text(summary.lastRow + 1)
+                        .text("，列 ").text(summary.columns)
+                        .text("，表头行 ").text(summary.headerRow >= 0 ? String.valueOf(summary.headerRow + 1) : "无");
+            }
+            html.text("，图片 ").text(summary.thumbnails.size()).markup("</p>");
+
+            if (summary.columns > 0) {
+                html.markup("<table border='1'><tr>");
+                for (String type : summary.columnTypes) {
+                    html.markup("<th>").text(type).markup("</th>");
                 }
-                return String.valueOf(cell.getNumericCellValue());
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                return "公式: " + cell.getCellFormula();
-            default:
-                return "";
+                html.markup("</tr>");
+                for (List<String> row : summary.rows) {
+                    html.markup("<tr>");
+                    for (String value : row) {
+                        html.markup("<td>").text(value).markup("</td>");
+                    }
+                    html.markup("</tr>");
+                }
+                html.markup("</table>");
+            }
+
+            for (int i = 0; i < summary.thumbnails.size(); i++) {
+                String uri = summary.thumbnailDataUri(i);
+                if (uri != null) {
+                    html.markup("<img src='").markup(uri).markup("'/>");
+                } else {
+                    html.markup("<span>[").text(summary.pictureTypes.get(i)).markup("]</span>");
+                }
+            }
+        }
+        html.markup("</body></html>");
+        html.flush();
+    }
+
+    // 释放区域查询缓存的工作簿
+    public void clearCache() {
+        workbooks.clear();
+    }
+
+    // 文件第一次预览（或修改后再预览）时，把全部单元格加入检索索引，而不只是显示出来的部分
+    private void indexIfNeeded(File file, Workbook workbook) {
+        if (searchIndex == null) return;
+        try {
+            if (!searchIndex.isCurrent(file)) {
+                searchIndex.index(file, workbook);
+            }
+        } catch (Exception e) {
+            System.err.println("Error indexing " + file + ": " + e.getMessage());
+        }
+    }
+
+    // 返回写出的单元格数
+    private int writeRow(HtmlChunkWriter html, Row row, int firstCol, int lastCol, CellTextFormatter text)
+            throws IOException {
+        html.markup("<tr>");
+        for (int cn = firstCol; cn <= lastCol; cn++) {
+            Cell cell = row.getCell(cn, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
+            html.markup("<td>").text(text.format(cell)).markup("</td>");
         }
+        html.markup("</tr>");
+        return Math.max(0, lastCol - firstCol + 1);
     }
 
     public static void main(String[] args) throws Exception {
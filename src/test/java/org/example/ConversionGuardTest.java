@@ -0,0 +1,174 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.ClientAnchor;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 取消、超时和资源限制：中止时抛出 {@link ConversionAbortedException}，不留下输出文件。
+ */
+public class ConversionGuardTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void cancelledJobWritesNothing() throws Exception {
+        File output = dir.resolve("out.xlsx").toFile();
+        ConversionJob job = new ConversionJob(createSource(10), output, ConversionOptions.defaults());
+        job.cancel();
+
+        assertAborted(ConversionAbortedException.Reason.CANCELLED, job);
+        assertFalse(output.exists());
+    }
+
+    @Test
+    public void timeoutAbortsConversion() throws Exception {
+        File output = dir.resolve("out.xlsx").toFile();
+        ConversionOptions options = ConversionOptions.defaults().setTimeoutMillis(1);
+        ConversionJob job = new ConversionJob(createSource(5000), output, options);
+
+        assertAborted(ConversionAbortedException.Reason.TIMEOUT, job);
+        assertFalse(output.exists());
+    }
+
+    @Test
+    public void cellLimitAbortsConversion() throws Exception {
+        File output = dir.resolve("out.xlsx").toFile();
+        ConversionOptions options = ConversionOptions.defaults().setMaxCells(10);
+        ConversionJob job = new ConversionJob(createSource(100), output, options);
+
+        assertAborted(ConversionAbortedException.Reason.CELL_LIMIT, job);
+        assertFalse(output.exists());
+    }
+
+    @Test
+    public void pictureLimitIsCheckedWhileCollectingPictures() throws Exception {
+        File output = dir.resolve("out.xlsx").toFile();
+        ConversionOptions options = ConversionOptions.defaults().setMaxPictureBytes(1);
+        ConversionJob job = new ConversionJob(createSource(100), output, options);
+
+        ConversionAbortedException e = assertAborted(ConversionAbortedException.Reason.PICTURE_LIMIT, job);
+        // 还没有开始复制单元格
+        assertEquals(0, e.getProgress().getRowsDone());
+        assertFalse(output.exists());
+    }
+
+    @Test
+    public void writePhaseChecksCancellationAndTimeout() throws Exception {
+        ConversionGuard cancelled = new ConversionGuard(ConversionOptions.defaults());
+        cancelled.begin();
+        OutputStream out = cancelled.watch(new ByteArrayOutputStream());
+        out.write(new byte[16], 0, 16);
+        cancelled.cancel();
+        assertEquals(ConversionAbortedException.Reason.CANCELLED,
+                assertThrows(ConversionAbortedException.class, () -> out.write(new byte[16], 0, 16)).getReason());
+
+        ConversionGuard timed = new ConversionGuard(ConversionOptions.defaults().setTimeoutMillis(1));
+        timed.begin();
+        Thread.sleep(20);
+        OutputStream late = timed.watch(new ByteArrayOutputStream());
+        assertEquals(ConversionAbortedException.Reason.TIMEOUT,
+                assertThrows(ConversionAbortedException.class, () -> late.write(0)).getReason());
+    }
+
+    @Test
+    public void requestWaitingOnCacheHonorsItsOwnGuard() throws Exception {
+        File source = createSource(10);
+        ConversionCache cache = new ConversionCache(dir.resolve("cache").toFile(), 1024 * 1024);
+        ConversionOptions options = ConversionOptions.defaults();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // 第一个请求的转换一直不结束
+            Future<Boolean> first = executor.submit(() -> cache.convert(source, dir.resolve("first.xlsx").toFile(),
+                    options, new ConversionGuard(options), target -> {
+                        started.countDown();
+                        release.await();
+                        ExcelConverter.convertXlsToXlsx(source, target);
+                    }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            ConversionGuard timed = new ConversionGuard(options.copy().setTimeoutMillis(200));
+            timed.begin();
+            ConversionAbortedException e = assertThrows(ConversionAbortedException.class,
+                    () -> cache.convert(source, dir.resolve("second.xlsx").toFile(), options, timed,
+                            target -> fail("second request must wait for the first")));
+            assertEquals(ConversionAbortedException.Reason.TIMEOUT, e.getReason());
+            assertFalse(first.isDone());
+
+            release.countDown();
+            assertFalse(first.get(30, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static ConversionAbortedException assertAborted(ConversionAbortedException.Reason reason,
+                                                            ConversionJob job) {
+        ConversionAbortedException e = assertThrows(ConversionAbortedException.class, job::call);
+        assertEquals(reason, e.getReason());
+        return e;
+    }
+
+    // rows 行、每行 4 个单元格，附带一张图片
+    private File createSource(int rows) throws Exception {
+        File file = dir.resolve("source-" + rows + ".xls").toFile();
+        try (HSSFWorkbook workbook = new HSSFWorkbook();
+             OutputStream out = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("数据");
+            for (int row = 0; row < rows; row++) {
+                Row r = sheet.createRow(row);
+                r.createCell(0).setCellValue("项目" + row);
+                r.createCell(1).setCellValue(row * 1.5);
+                r.createCell(2).setCellValue(row % 2 == 0);
+                r.createCell(3).setCellFormula("B" + (row + 1) + "*2");
+            }
+
+            int picture = workbook.addPicture(png(), Workbook.PICTURE_TYPE_PNG);
+            ClientAnchor anchor = workbook.getCreationHelper().createClientAnchor();
+            anchor.setCol1(5);
+            anchor.setRow1(1);
+            anchor.setCol2(7);
+            anchor.setRow2(5);
+            sheet.createDrawingPatriarch().createPicture(anchor, picture);
+
+            workbook.write(out);
+        }
+        return file;
+    }
+
+    private static byte[] png() throws Exception {
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(3, 3, 0xFF0000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        return bytes.toByteArray();
+    }
+}
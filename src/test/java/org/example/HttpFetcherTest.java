@@ -0,0 +1,303 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 用本地 HTTP 桩和假解析器检查 {@link HostCache} 的 robots、DNS 和重定向缓存，
+ * 以及 {@link ImageDownloader} 和 {@link CrawlArchive}。
+ */
+public class HttpFetcherTest {
+
+    private HttpServer server;
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final AtomicInteger resolutions = new AtomicInteger();
+    private HttpFetcher fetcher;
+    private String base;
+    // /image.png 的内容：PNG 签名加填充
+    private final byte[] image = png(100_000);
+    private volatile String lastRange;
+    private volatile String lastRequestUri;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        // crawl.test 只存在于假解析器中
+        HostCache.Resolver resolver = host -> {
+            resolutions.incrementAndGet();
+            if (!host.equals("crawl.test")) throw new UnknownHostException(host);
+            return new InetAddress[]{InetAddress.getByAddress(host, new byte[]{127, 0, 0, 1})};
+        };
+        fetcher = new HttpFetcher(new HostCache(resolver, HostCache.DEFAULT_DNS_TTL_MILLIS, 100), Crawler.USER_AGENT);
+        base = "http://crawl.test:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        lastRequestUri = exchange.getRequestURI().toString();
+        hits.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        switch (path) {
+            case "/robots.txt":
+                respond(exchange, 200, "User-agent: *\nDisallow: /\n\n"
+                        + "User-agent: Crawler\nDisallow: /private\nAllow: /private/public$\n");
+                break;
+            case "/old":
+                exchange.getResponseHeaders().set("Location", "/new");
+                respond(exchange, 301, "");
+                break;
+            case "/image.png":
+                serveImage(exchange);
+                break;
+            case "/fake.png":
+                exchange.getResponseHeaders().set("Content-Type", "image/png");
+                respond(exchange, 200, "<html>not an image</html>");
+                break;
+            case "/moved":
+                exchange.getResponseHeaders().set("Location", "/new");
+                respond(exchange, 302, "");
+                break;
+            default:
+                respond(exchange, 200, "<html><body>" + path + "</body></html>");
+                break;
+        }
+    }
+
+    // 支持 Range 和 If-Range 的图片
+    private void serveImage(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        lastRange = range;
+        exchange.getResponseHeaders().set("Content-Type", "image/png");
+        exchange.getResponseHeaders().set("ETag", "\"v1\"");
+        if (range != null && "\"v1\"".equals(ifRange)) {
+            int start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (image.length - 1) + "/" + image.length);
+            exchange.sendResponseHeaders(206, image.length - start);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(image, start, image.length - start);
+            }
+        } else {
+            exchange.sendResponseHeaders(200, image.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(image);
+            }
+        }
+    }
+
+    private static byte[] png(int length) {
+        byte[] data = new byte[length];
+        byte[] signature = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+        System.arraycopy(signature, 0, data, 0, signature.length);
+        for (int i = signature.length; i < length; i++) data[i] = (byte) (i * 31);
+        return data;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private int hits(String path) {
+        AtomicInteger count = hits.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    @Test
+    public void robotsAndAddressesAreFetchedOncePerHost() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, fetcher.get(base + "/page" + i).status);
+        }
+        assertFalse(fetcher.isAllowed(base + "/private/x"));
+        assertTrue(fetcher.isAllowed(base + "/private/public"));
+        assertFalse(fetcher.isAllowed(base + "/private/public/x"));
+        assertThrows(IOException.class, () -> fetcher.get(base + "/private/x"));
+
+        assertEquals(1, hits("/robots.txt"));
+        assertEquals(1, resolutions.get());
+        assertEquals(0, hits("/private/x"));
+    }
+
+    @Test
+    public void permanentRedirectsAreRemembered() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            HttpFetcher.Response response = fetcher.get(base + "/old");
+            assertEquals(200, response.status);
+            assertEquals(base + "/new", response.url);
+        }
+        assertEquals(1, hits("/old"));
+
+        // 临时重定向每次都重新请求
+        fetcher.get(base + "/moved");
+        fetcher.get(base + "/moved");
+        assertEquals(2, hits("/moved"));
+    }
+
+    @Test
+    public void unknownHostsAreCachedNegatively() {
+        assertFalse(fetcher.isAllowed("http://missing.test/"));
+        assertThrows(UnknownHostException.class, () -> fetcher.get("http://missing.test/a"));
+        assertThrows(UnknownHostException.class, () -> fetcher.get("http://missing.test/b"));
+        assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    public void robotsRulesUseLongestMatch() {
+        RobotsRules rules = RobotsRules.parse("User-agent: other\nDisallow: /\n\n"
+                + "User-agent: *\nDisallow: /tmp\nAllow: /tmp/keep\nDisallow: /*.pdf$\nDisallow:\n", "Crawler");
+        assertTrue(rules.isAllowed("/"));
+        assertFalse(rules.isAllowed("/tmp/a"));
+        assertTrue(rules.isAllowed("/tmp/keep/a"));
+        assertFalse(rules.isAllowed("/docs/a.pdf"));
+        assertTrue(rules.isAllowed("/docs/a.pdf?x=1"));
+        assertTrue(rules.isAllowed("/robots.txt"));
+
+        assertTrue(RobotsRules.matches("/a*b*c$", "/axxbyyc"));
+        assertFalse(RobotsRules.matches("/a*b*c$", "/axxbyycd"));
+        assertTrue(RobotsRules.matches("/a*b", "/aXbYZ"));
+        assertTrue(RobotsRules.matches("/**", "/"));
+        // 多个 * 不会指数回溯
+        StringBuilder path = new StringBuilder("/");
+        for (int i = 0; i < 10_000; i++) path.append('a');
+        assertFalse(RobotsRules.matches("/*a*a*a*a*a*a*a*a*a*b", path.toString()));
+    }
+
+    @Test
+    public void imagesAreSniffedCappedAndResumed() throws Exception {
+        File dir = directory.toFile();
+        ImageDownloader downloader = new ImageDownloader(fetcher, dir, ImageDownloader.DEFAULT_MAX_BYTES);
+
+        File saved = downloader.download(base + "/image.png");
+        assertTrue(saved.getName().endsWith(".png"));
+        assertArrayEquals(image, Files.readAllBytes(saved.toPath()));
+        assertNull(lastRange);
+        // 已下载的不再请求
+        downloader.download(base + "/image.png");
+        assertEquals(1, hits("/image.png"));
+
+        // 中断后留下的临时文件从已写入的位置续传
+        String name = saved.getName().substring(0, saved.getName().lastIndexOf('.'));
+        assertTrue(saved.delete());
+        Files.write(new File(dir, name + ".part").toPath(), Arrays.copyOf(image, 40_000));
+        Files.write(new File(dir, name + ".part.validator").toPath(), "\"v1\"".getBytes(StandardCharsets.UTF_8));
+        saved = downloader.download(base + "/image.png");
+        assertEquals("bytes=40000-", lastRange);
+        assertArrayEquals(image, Files.readAllBytes(saved.toPath()));
+        assertFalse(new File(dir, name + ".part").exists());
+        assertFalse(new File(dir, name + ".part.validator").exists());
+
+        // Content-Type 是图片但内容不是；超过大小上限
+        assertNull(downloader.download(base + "/fake.png"));
+        assertNull(new ImageDownloader(fetcher, dir, 1000).download(base + "/image.png?big"));
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    @Test
+    public void archivedRecordsAreReadableByOffset() throws Exception {
+        File dir = directory.toFile();
+        ImageDownloader downloader = new ImageDownloader(fetcher, dir, ImageDownloader.DEFAULT_MAX_BYTES);
+        // 上限很小，每条记录后换一个文件
+        try (CrawlArchive archive = new CrawlArchive(dir, 1)) {
+            archive.write(fetcher.get(base + "/page"));
+            assertEquals(image.length, downloader.archive(base + "/image.png", archive));
+            assertEquals(-1, downloader.archive(base + "/fake.png", archive));
+        }
+
+        File second = new File(dir, "crawl-00001" + CrawlArchive.ARCHIVE_SUFFIX);
+        List<String> index = Files.readAllLines(new File(dir, second.getName() + CrawlArchive.INDEX_SUFFIX).toPath());
+        assertEquals(1, index.size());
+        String[] entry = index.get(0).split("\t");
+        assertEquals(base + "/image.png", entry[0]);
+        assertEquals("200", entry[2]);
+        assertEquals("image/png", entry[3]);
+
+        byte[] record = CrawlArchive.readRecord(second, Long.parseLong(entry[4]), Long.parseLong(entry[5]));
+        String text = new String(record, StandardCharsets.ISO_8859_1);
+        assertTrue(text.startsWith("WARC/1.1\r\nWARC-Type: response\r\n"));
+        assertTrue(text.contains("\r\nContent-Length: " + image.length + "\r\n\r\n"));
+        int body = text.indexOf("\r\n\r\n", text.indexOf("HTTP/1.1 200")) + 4;
+        assertArrayEquals(image, Arrays.copyOfRange(record, body, body + image.length));
+
+        // 整个文件可以顺序解压：warcinfo 加一条响应
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(second.toPath()))) {
+            String all = new String(readAll(in), StandardCharsets.ISO_8859_1);
+            assertTrue(all.startsWith("WARC/1.1\r\nWARC-Type: warcinfo\r\n"));
+            assertTrue(all.endsWith("\r\n\r\n"));
+        }
+
+        // 已有的文件不覆盖
+        try (CrawlArchive archive = new CrawlArchive(dir, 1)) {
+            archive.write(fetcher.get(base + "/again"));
+        }
+        assertTrue(new File(dir, "crawl-00002" + CrawlArchive.ARCHIVE_SUFFIX).isFile());
+    }
+
+    private static byte[] readAll(GZIPInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void nonAsciiTargetsAreEncodedAndProxiesHonored() throws Exception {
+        fetcher.get(base + "/图片/a.jpg?q=中文");
+        assertEquals("/%E5%9B%BE%E7%89%87/a.jpg?q=%E4%B8%AD%E6%96%87", lastRequestUri);
+
+        // 本地桩同时充当 HTTP 代理：请求行为绝对地址，主机名不经过解析器
+        System.setProperty("http.proxyHost", "127.0.0.1");
+        System.setProperty("http.proxyPort", String.valueOf(server.getAddress().getPort()));
+        try {
+            HttpFetcher proxied = new HttpFetcher(new HostCache(host -> {
+                throw new UnknownHostException(host);
+            }, HostCache.DEFAULT_DNS_TTL_MILLIS, 100), Crawler.USER_AGENT);
+            assertEquals(200, proxied.get("http://proxied.test/page").status);
+            assertEquals("http://proxied.test/page", lastRequestUri);
+        } finally {
+            System.clearProperty("http.proxyHost");
+            System.clearProperty("http.proxyPort");
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 用 {@link OutputVerifier} 检查转换结果与源文件等价。
+ */
+public class OutputVerifierTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void convertedWorkbookIsEquivalent() throws Exception {
+        File source = createSource();
+        File output = dir.resolve("out.xlsx").toFile();
+        ExcelConverter.convertXlsToXlsx(source, output);
+
+        OutputVerifier.verify(source, output).assertEquivalent();
+    }
+
+    @Test
+    public void collapsedBlankCellsAreEquivalent() throws Exception {
+        File source = createSource();
+        File output = dir.resolve("collapsed.xlsx").toFile();
+        ConversionOptions options = ConversionOptions.defaults().setCollapseBlankCells(true);
+        ExcelConverter.convertXlsToXlsx(source, output, options);
+
+        OutputVerifier.verify(source, output, options).assertEquivalent();
+    }
+
+    @Test
+    public void rowBlocksAreEquivalent() throws Exception {
+        File source = createTallSource(RowBlockWriter.MIN_ROWS + 500);
+        File sequential = dir.resolve("sequential.xlsx").toFile();
+        File blocks = dir.resolve("blocks.xlsx").toFile();
+        ExcelConverter.convertXlsToXlsx(source, sequential);
+        ConversionOptions options = ConversionOptions.defaults().setRowBlockThreads(4);
+        ExcelConverter.convertXlsToXlsx(source, blocks, options);
+
+        OutputVerifier.verify(source, sequential).assertEquivalent();
+        OutputVerifier.verify(source, blocks, options).assertEquivalent();
+        try (InputStream in = new FileInputStream(blocks);
+             Workbook workbook = new XSSFWorkbook(in)) {
+            Row hidden = workbook.getSheetAt(0).getRow(7);
+            assertTrue(hidden.getZeroHeight());
+            assertEquals(400, hidden.getHeight());
+        }
+    }
+
+    @Test
+    public void changedValueIsReported() throws Exception {
+        File source = createSource();
+        File output = dir.resolve("out.xlsx").toFile();
+        ExcelConverter.convertXlsToXlsx(source, output);
+
+        File tampered = dir.resolve("tampered.xlsx").toFile();
+        try (InputStream in = new FileInputStream(output);
+             Workbook workbook = new XSSFWorkbook(in);
+             OutputStream out = new FileOutputStream(tampered)) {
+            workbook.getSheet("数据").getRow(1).getCell(1).setCellValue(43.0);
+            workbook.write(out);
+        }
+
+        VerificationReport report = OutputVerifier.verify(source, tampered);
+        assertFalse(report.isEquivalent());
+        assertEquals(1, report.getDifferenceCount());
+        VerificationReport.Difference difference = report.getDifferences().get(0);
+        assertEquals(VerificationReport.Kind.VALUE, difference.getKind());
+        assertEquals("B2", difference.getLocation());
+    }
+
+    // 源文件：样式、自定义数字格式、公式、合并区域、列宽、隐藏列、图片和带样式的空白单元格
+    private File createSource() throws Exception {
+        File file = dir.resolve("source.xls").toFile();
+        try (HSSFWorkbook workbook = new HSSFWorkbook();
+             OutputStream out = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("数据");
+
+            Font bold = workbook.createFont();
+            bold.setBold(true);
+            bold.setColor(IndexedColors.RED.getIndex());
+            CellStyle header = workbook.createCellStyle();
+            header.setFont(bold);
+            header.setAlignment(HorizontalAlignment.CENTER);
+            header.setBorderBottom(BorderStyle.THIN);
+            header.setFillForegroundColor(IndexedColors.LIGHT_YELLOW.getIndex());
+            header.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+
+            CellStyle money = workbook.createCellStyle();
+            money.setDataFormat(workbook.createDataFormat().getFormat("#,##0.00 \"元\""));
+
+            Row title = sheet.createRow(0);
+            for (int col = 0; col < 4; col++) {
+                Cell cell = title.createCell(col);
+                cell.setCellValue("列" + col);
+                cell.setCellStyle(header);
+            }
+            sheet.addMergedRegion(new CellRangeAddress(5, 5, 0, 3));
+
+            for (int row = 1; row <= 4; row++) {
+                Row r = sheet.createRow(row);
+                r.createCell(0).setCellValue("项目" + row);
+                Cell amount = r.createCell(1);
+                amount.setCellValue(row * 10.5);
+                amount.setCellStyle(money);
+                r.createCell(2).setCellFormula("B" + (row + 1) + "*2");
+                r.createCell(3).setCellValue(row % 2 == 0);
+                // 只有数字格式的空白单元格，折叠后不会生成
+                r.createCell(4).setCellStyle(money);
+            }
+            sheet.getRow(1).createCell(5).setCellStyle(header);
+
+            sheet.setColumnWidth(0, 20 * 256);
+            sheet.setColumnHidden(3, true);
+            workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+
+            int picture = workbook.addPicture(png(), Workbook.PICTURE_TYPE_PNG);
+            ClientAnchor anchor = workbook.getCreationHelper().createClientAnchor();
+            anchor.setCol1(6);
+            anchor.setRow1(1);
+            anchor.setCol2(8);
+            anchor.setRow2(5);
+            sheet.createDrawingPatriarch().createPicture(anchor, picture);
+
+            workbook.write(out);
+        }
+        return file;
+    }
+
+    // 超过行块阈值的工作表：共享字符串、数字、布尔、公式、带样式的空白单元格和隐藏的自定义行高
+    private File createTallSource(int rows) throws Exception {
+        File file = dir.resolve("tall.xls").toFile();
+        try (HSSFWorkbook workbook = new HSSFWorkbook();
+             OutputStream out = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("明细");
+            CellStyle percent = workbook.createCellStyle();
+            percent.setDataFormat(workbook.createDataFormat().getFormat("0.0%"));
+            for (int row = 0; row < rows; row++) {
+                Row r = sheet.createRow(row);
+                r.createCell(0).setCellValue("类别" + (row % 50) + (row == 5 ? " <&>" : ""));
+                Cell value = r.createCell(1);
+                value.setCellValue(row / 7.0);
+                value.setCellStyle(percent);
+                r.createCell(2).setCellValue(row % 3 == 0);
+                if (row % 10 == 0) {
+                    r.createCell(3).setCellFormula("B" + (row + 1) + "*2");
+                    r.createCell(5).setCellStyle(percent);
+                }
+            }
+            sheet.getRow(7).setHeight((short) 400);
+            sheet.getRow(7).setZeroHeight(true);
+            workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            workbook.write(out);
+        }
+        return file;
+    }
+
+    private static byte[] png() throws Exception {
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(3, 3, 0xFF0000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        return bytes.toByteArray();
+    }
+}
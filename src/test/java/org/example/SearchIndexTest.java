@@ -0,0 +1,118 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 分词规则和段文件的写出、重新加载。
+ */
+public class SearchIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void tokenizerKeepsNumbersAndSigns() {
+        assertEquals(tokens("12.5"), tokens("12.50"));
+        assertEquals(tokens("-12.5"), tokens(SearchIndex.normalizeNumber(-12.5)));
+        assertEquals(tokens("-12.5"), tokens("(-12.50)"));
+        assertEquals(set("-12.5"), tokens("-12.5"));
+        assertEquals(set("12.5"), tokens("12.5"));
+
+        // 连字符不是负号
+        assertEquals(set("2024", "1", "5"), tokens("2024-01-05"));
+        assertEquals(set("a", "12"), tokens("A-12"));
+        assertEquals(set("10kg"), tokens("-10KG"));
+        assertEquals(set("0"), tokens("-0.00"));
+    }
+
+    @Test
+    public void tokenizerSplitsWordsAndCjkBigrams() {
+        assertEquals(set("hello", "world"), tokens("Hello, WORLD!"));
+        assertEquals(set("销售", "售额"), tokens("销售额"));
+        assertEquals(set("总", "q3", "收入"), tokens("总 Q3收入"));
+    }
+
+    @Test
+    public void segmentsRoundTrip() throws Exception {
+        File indexDir = dir.resolve("index").toFile();
+        File file = dir.resolve("data.xls").toFile();
+        Files.createFile(file.toPath());
+
+        // 超过 writeUTF 65535 字节上限的词（泰文字母在 UTF-8 中占 3 个字节）
+        char[] longWord = new char[30000];
+        Arrays.fill(longWord, '\u0e01');
+        try (HSSFWorkbook workbook = new HSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("数据 2024");
+            Row row = sheet.createRow(3);
+            row.createCell(0).setCellValue(-12.5);
+            row.createCell(1).setCellValue(12.5);
+            row.createCell(2).setCellValue("季度 收入");
+            row.createCell(3).setCellValue(new String(longWord));
+            new SearchIndex(indexDir).index(file, workbook);
+        }
+
+        SearchIndex reloaded = new SearchIndex(indexDir);
+        assertTrue(reloaded.isCurrent(file));
+        assertHit(reloaded.search("-12.5"), "数据 2024", 3, 0);
+        assertHit(reloaded.search("12.5"), "数据 2024", 3, 1);
+        assertHit(reloaded.search("收入 季度"), "数据 2024", 3, 2);
+        assertHit(reloaded.search(new String(longWord)), "数据 2024", 3, 3);
+        assertTrue(reloaded.search("缺失").isEmpty());
+    }
+
+    @Test
+    public void reindexingKeepsMemoryBounded() throws Exception {
+        File indexDir = dir.resolve("index").toFile();
+        File file = dir.resolve("data.xls").toFile();
+        Files.createFile(file.toPath());
+
+        SearchIndex index = new SearchIndex(indexDir);
+        try (HSSFWorkbook workbook = new HSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("数据");
+            for (int row = 0; row < 100; row++) {
+                sheet.createRow(row).createCell(0).setCellValue(row);
+            }
+            // 失效文档最多积累到压缩阈值，命中位置不随重建索引的次数增长
+            int bound = (SearchIndex.COMPACT_THRESHOLD + 1) * 100;
+            for (int i = 0; i < 500; i++) {
+                index.index(file, workbook);
+                assertTrue(index.postingCount() <= bound, "postings after " + (i + 1) + " re-indexes");
+            }
+        }
+        assertHit(index.search("42"), "数据", 42, 0);
+        assertHit(new SearchIndex(indexDir).search("42"), "数据", 42, 0);
+    }
+
+    private static void assertHit(List<SearchIndex.Hit> hits, String sheetName, int row, int column) {
+        assertEquals(1, hits.size());
+        SearchIndex.Hit hit = hits.get(0);
+        assertEquals(sheetName, hit.getSheetName());
+        assertEquals(row, hit.getRow());
+        assertEquals(column, hit.getColumn());
+    }
+
+    private static Set<String> tokens(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        SearchIndex.tokenize(text, tokens);
+        return tokens;
+    }
+
+    private static Set<String> set(String... tokens) {
+        return new LinkedHashSet<>(Arrays.asList(tokens));
+    }
+}
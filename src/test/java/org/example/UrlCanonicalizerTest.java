@@ -0,0 +1,54 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 检查 {@link UrlCanonicalizer} 的规范化规则和 {@link CrawlTrapDetector} 的陷阱识别。
+ */
+public class UrlCanonicalizerTest {
+
+    @Test
+    public void equivalentUrlsAreCanonicalizedToOneString() {
+        String expected = "http://example.com/a/c?id=7&page=2";
+        assertEquals(expected, UrlCanonicalizer.canonicalize("HTTP://Example.COM:80/a/b/../c?page=2&id=7#top"));
+        assertEquals(expected, UrlCanonicalizer.canonicalize("http://example.com./a/./c?id=7&utm_source=x&page=2&"));
+        assertEquals(expected, UrlCanonicalizer.canonicalize("http://example.com/a/c;jsessionid=ABC?id=7&page=2&sid=1"));
+        assertEquals(expected, UrlCanonicalizer.canonicalize("http://example.com/%61/c?id=%37&page=2"));
+
+        assertEquals("https://example.com/", UrlCanonicalizer.canonicalize("https://example.com:443"));
+        assertEquals("https://example.com:8443/x%2Fy", UrlCanonicalizer.canonicalize("https://example.com:8443/x%2fy"));
+        assertEquals("http://example.com/a%20b", UrlCanonicalizer.canonicalize("http://example.com/a b"));
+        assertEquals("http://example.com/100%25", UrlCanonicalizer.canonicalize("http://example.com/100%"));
+        // 非 ASCII 字符总是编码，与已编码的写法相同
+        String chinese = "http://example.com/%E5%9B%BE%E7%89%87?q=%E4%B8%AD%E6%96%87";
+        assertEquals(chinese, UrlCanonicalizer.canonicalize("http://example.com/图片?q=中文"));
+        assertEquals(chinese, UrlCanonicalizer.canonicalize("http://example.com/%e5%9b%be%e7%89%87?q=%E4%B8%AD%E6%96%87"));
+        assertEquals("http://xn--fiqs8s.example/", UrlCanonicalizer.canonicalize("http://中国.example"));
+        assertNull(UrlCanonicalizer.canonicalize("mailto:someone@example.com"));
+        assertNull(UrlCanonicalizer.canonicalize("javascript:void(0)"));
+        assertNull(UrlCanonicalizer.canonicalize(""));
+    }
+
+    @Test
+    public void trapsAreRejected() {
+        CrawlTrapDetector traps = new CrawlTrapDetector(3);
+        assertTrue(traps.accept("http://example.com/"));
+        assertFalse(traps.accept("http://example.com/a/b/a/b/a/b"));
+        StringBuilder deep = new StringBuilder("http://example.com");
+        for (int i = 0; i <= CrawlTrapDetector.MAX_PATH_DEPTH; i++) deep.append("/d").append(i);
+        assertFalse(traps.accept(deep.toString()));
+
+        // 日历：模式相同，超过限额后拒绝
+        for (int day = 1; day <= 3; day++) {
+            assertTrue(traps.accept("http://example.com/calendar/2024/" + day + "?view=month"));
+        }
+        assertFalse(traps.accept("http://example.com/calendar/2024/4?view=month"));
+        assertTrue(traps.accept("http://example.com/calendar/2024/4?view=week&x=1"));
+        assertEquals(3, traps.getRejected());
+    }
+}